@@ -2,9 +2,11 @@ package com.gym.booking;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import java.util.TimeZone;
 
 @SpringBootApplication
+@EnableScheduling
 public class GymBookingApplication {
     public static void main(String[] args) {
         // Set application default timezone from environment (fallback to Europe/Athens)
@@ -0,0 +1,102 @@
+package com.gym.booking.cache;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Small bounded cache with per-entry expiry on top of ConcurrentHashMap.
+ *
+ * Reads are a single map lookup plus a timestamp check, with no locking.
+ * When a write pushes the size over the bound, expired entries are swept
+ * first and then arbitrary entries are dropped until the cache fits again;
+ * only one thread sweeps at a time and the others carry on.
+ */
+public class ExpiringCache<K, V> {
+
+    private record Entry<V>(V value, long expiresAtMillis) {
+    }
+
+    private final ConcurrentHashMap<K, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final AtomicBoolean sweeping = new AtomicBoolean();
+    private final int maxEntries;
+    private final long defaultTtlMillis;
+
+    public ExpiringCache(int maxEntries, Duration defaultTtl) {
+        this.maxEntries = Math.max(1, maxEntries);
+        this.defaultTtlMillis = defaultTtl.toMillis();
+    }
+
+    public V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAtMillis() <= System.currentTimeMillis()) {
+            entries.remove(key, entry);
+            return null;
+        }
+        return entry.value();
+    }
+
+    public void put(K key, V value) {
+        put(key, value, defaultTtlMillis);
+    }
+
+    /**
+     * Store with an explicit TTL, never longer than the cache default.
+     */
+    public void put(K key, V value, long ttlMillis) {
+        long ttl = Math.min(ttlMillis, defaultTtlMillis);
+        if (ttl <= 0) {
+            return;
+        }
+        entries.put(key, new Entry<>(value, System.currentTimeMillis() + ttl));
+        if (entries.size() > maxEntries) {
+            evict();
+        }
+    }
+
+    public void remove(K key) {
+        entries.remove(key);
+    }
+
+    /**
+     * Drop every entry matching the predicate; used for targeted invalidation
+     * when the key alone does not identify what changed. Scans the whole map.
+     */
+    public void removeIf(java.util.function.BiPredicate<K, V> matcher) {
+        entries.entrySet().removeIf(e -> matcher.test(e.getKey(), e.getValue().value()));
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public void purgeExpired() {
+        long now = System.currentTimeMillis();
+        entries.values().removeIf(e -> e.expiresAtMillis() <= now);
+    }
+
+    private void evict() {
+        if (!sweeping.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            purgeExpired();
+            Iterator<Map.Entry<K, Entry<V>>> it = entries.entrySet().iterator();
+            while (entries.size() > maxEntries && it.hasNext()) {
+                it.next();
+                it.remove();
+            }
+        } finally {
+            sweeping.set(false);
+        }
+    }
+}
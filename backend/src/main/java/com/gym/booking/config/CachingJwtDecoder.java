@@ -0,0 +1,87 @@
+package com.gym.booking.config;
+
+import com.gym.booking.cache.ExpiringCache;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HexFormat;
+
+/**
+ * JwtDecoder that remembers verified tokens until they expire.
+ *
+ * Polling clients send the same bearer token over and over; after the first
+ * successful decode the signature check and claim validation are skipped
+ * and the cached Jwt is returned. Authorities computed from a cached token
+ * are kept alongside it. Failed decodes are never cached. Entries are keyed
+ * by the SHA-256 digest of the token, so the cache keys are not usable
+ * bearer tokens.
+ */
+public class CachingJwtDecoder implements JwtDecoder {
+
+    private static final class VerifiedToken {
+        final Jwt jwt;
+        volatile Collection<GrantedAuthority> authorities;
+
+        VerifiedToken(Jwt jwt) {
+            this.jwt = jwt;
+        }
+    }
+
+    private final JwtDecoder delegate;
+    private final ExpiringCache<String, VerifiedToken> verified;
+
+    public CachingJwtDecoder(JwtDecoder delegate, int maxEntries, Duration maxTtl) {
+        this.delegate = delegate;
+        this.verified = new ExpiringCache<>(maxEntries, maxTtl);
+    }
+
+    @Override
+    public Jwt decode(String token) throws JwtException {
+        String key = sha256(token);
+        VerifiedToken cached = verified.get(key);
+        if (cached != null) {
+            return cached.jwt;
+        }
+        Jwt jwt = delegate.decode(token);
+        if (jwt.getExpiresAt() != null) {
+            verified.put(key, new VerifiedToken(jwt),
+                    Duration.between(Instant.now(), jwt.getExpiresAt()).toMillis());
+        }
+        return jwt;
+    }
+
+    /**
+     * Authorities for a decoded token, computed once per cached token.
+     */
+    public Collection<GrantedAuthority> authorities(Jwt jwt, Converter<Jwt, Collection<GrantedAuthority>> compute) {
+        VerifiedToken cached = verified.get(sha256(jwt.getTokenValue()));
+        if (cached == null) {
+            return compute.convert(jwt);
+        }
+        Collection<GrantedAuthority> authorities = cached.authorities;
+        if (authorities == null) {
+            authorities = java.util.List.copyOf(compute.convert(jwt));
+            cached.authorities = authorities;
+        }
+        return authorities;
+    }
+
+    private static String sha256(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(
+                    (value != null ? value : "").getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.gym.booking.config;
+
+import com.nimbusds.jose.KeySourceException;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.SecurityContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * JWKS source that never fetches on the request path.
+ *
+ * Keys are loaded at startup and refreshed in the background on a fixed
+ * schedule. A token signed with an unknown {@code kid} (key rotation) asks for
+ * one extra refresh; concurrent requests coalesce into a single fetch and
+ * refreshes are rate limited, so a flood of bogus tokens cannot hammer
+ * Keycloak. The request that saw the unknown key is rejected rather than made
+ * to wait; clients retry once the new key is in.
+ */
+@Component
+public class RefreshingJwkSource implements JWKSource<SecurityContext> {
+    private static final Logger log = LoggerFactory.getLogger(RefreshingJwkSource.class);
+
+    private static final int CONNECT_TIMEOUT_MS = 2000;
+    private static final int READ_TIMEOUT_MS = 2000;
+    private static final int SIZE_LIMIT_BYTES = 50 * 1024;
+
+    private final String jwkSetUri;
+    private final long minRefreshIntervalMillis;
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    private volatile JWKSet keys = new JWKSet();
+    private volatile long lastRefreshMillis;
+
+    public RefreshingJwkSource(
+            @Value("${spring.security.oauth2.resourceserver.jwt.jwk-set-uri:}") String jwkSetUri,
+            @Value("${app.security.jwks.min-refresh-interval-ms:30000}") long minRefreshIntervalMillis) {
+        this.jwkSetUri = jwkSetUri;
+        this.minRefreshIntervalMillis = minRefreshIntervalMillis;
+        if (isConfigured()) {
+            refresh();
+        }
+    }
+
+    public boolean isConfigured() {
+        return jwkSetUri != null && !jwkSetUri.isBlank();
+    }
+
+    @Override
+    public List<JWK> get(JWKSelector jwkSelector, SecurityContext context) throws KeySourceException {
+        List<JWK> matches = jwkSelector.select(keys);
+        if (matches.isEmpty() && jwkSelector.getMatcher().hasKeyID()) {
+            requestRefresh();
+        }
+        return matches;
+    }
+
+    @Scheduled(fixedDelayString = "${app.security.jwks.refresh-interval-ms:300000}",
+            initialDelayString = "${app.security.jwks.refresh-interval-ms:300000}")
+    public void scheduledRefresh() {
+        if (isConfigured()) {
+            refresh();
+        }
+    }
+
+    private void requestRefresh() {
+        if (System.currentTimeMillis() - lastRefreshMillis < minRefreshIntervalMillis || refreshing.get()) {
+            return;
+        }
+        Thread.ofVirtual().name("jwks-refresh").start(this::refresh);
+    }
+
+    private void refresh() {
+        if (!refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            JWKSet fresh = JWKSet.load(URI.create(jwkSetUri).toURL(), CONNECT_TIMEOUT_MS, READ_TIMEOUT_MS, SIZE_LIMIT_BYTES);
+            if (!fresh.getKeys().isEmpty()) {
+                keys = fresh;
+            }
+        } catch (Exception e) {
+            // Keep serving the last known keys
+            log.warn("JWKS refresh from {} failed: {}", jwkSetUri, e.getMessage());
+        } finally {
+            lastRefreshMillis = System.currentTimeMillis();
+            refreshing.set(false);
+        }
+    }
+}
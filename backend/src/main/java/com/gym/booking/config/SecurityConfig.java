@@ -1,5 +1,9 @@
 package com.gym.booking.config;
 
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.proc.JWSVerificationKeySelector;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jwt.proc.DefaultJWTProcessor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -24,8 +28,8 @@ import java.util.List;
 public class SecurityConfig {
 
     @Bean
-    public SecurityFilterChain filterChain(HttpSecurity http, SecurityLoggingFilter securityLoggingFilter)
-            throws Exception {
+    public SecurityFilterChain filterChain(HttpSecurity http, SecurityLoggingFilter securityLoggingFilter,
+            JwtAuthenticationConverter jwtAuthenticationConverter) throws Exception {
         http
                 .cors(cors -> cors.configurationSource(corsConfigurationSource(null)))
                 .csrf(csrf -> csrf.disable())
@@ -37,84 +41,99 @@ public class SecurityConfig {
                         .permitAll()
                         .anyRequest().authenticated())
                 .oauth2ResourceServer(oauth -> oauth
-                        .jwt(jwt -> jwt.jwtAuthenticationConverter(jwtAuthenticationConverter())))
+                        .jwt(jwt -> jwt.jwtAuthenticationConverter(jwtAuthenticationConverter)))
                 .addFilterAfter(securityLoggingFilter, SecurityContextHolderFilter.class);
 
         return http.build();
     }
 
+    // Verified tokens are cached until they expire; keys come from the
+    // background-refreshed JWKS source so requests never wait on a key fetch
     @Bean
-    public JwtDecoder jwtDecoder(
-            @Value("${spring.security.oauth2.resourceserver.jwt.jwk-set-uri:}") String jwkSetUri,
-            @Value("${spring.security.oauth2.resourceserver.jwt.issuer-uri:http://keycloak:8080/auth/realms/gym-booking}") String issuer) {
-        if (jwkSetUri != null && !jwkSetUri.isBlank()) {
-            return NimbusJwtDecoder.withJwkSetUri(jwkSetUri).build();
+    public CachingJwtDecoder jwtDecoder(RefreshingJwkSource jwkSource,
+            @Value("${spring.security.oauth2.resourceserver.jwt.issuer-uri:http://keycloak:8080/auth/realms/gym-booking}") String issuer,
+            @Value("${app.security.token-cache.max-entries:10000}") int maxEntries,
+            @Value("${app.security.token-cache.max-ttl-seconds:3600}") long maxTtlSeconds) {
+        JwtDecoder delegate;
+        if (jwkSource.isConfigured()) {
+            DefaultJWTProcessor<SecurityContext> processor = new DefaultJWTProcessor<>();
+            processor.setJWSKeySelector(new JWSVerificationKeySelector<>(JWSAlgorithm.RS256, jwkSource));
+            // Claims are validated by Spring's JwtValidators in NimbusJwtDecoder
+            processor.setJWTClaimsSetVerifier((claims, context) -> {
+            });
+            delegate = new NimbusJwtDecoder(processor);
+        } else {
+            delegate = JwtDecoders.fromIssuerLocation(issuer);
         }
-        return JwtDecoders.fromIssuerLocation(issuer);
+        return new CachingJwtDecoder(delegate, maxEntries, java.time.Duration.ofSeconds(maxTtlSeconds));
     }
 
     @Bean
-    public JwtAuthenticationConverter jwtAuthenticationConverter() {
+    public JwtAuthenticationConverter jwtAuthenticationConverter(CachingJwtDecoder jwtDecoder) {
         JwtAuthenticationConverter converter = new JwtAuthenticationConverter();
-        converter.setJwtGrantedAuthoritiesConverter(jwt -> {
-            java.util.Set<String> roleNames = new java.util.LinkedHashSet<>();
+        converter.setJwtGrantedAuthoritiesConverter(
+                jwt -> jwtDecoder.authorities(jwt, SecurityConfig::extractAuthorities));
+        return converter;
+    }
 
-            // Standard Keycloak realm_access.roles
-            Object realmAccess = jwt.getClaims().get("realm_access");
-            if (realmAccess instanceof java.util.Map<?, ?> realm) {
-                Object rolesObj = realm.get("roles");
-                if (rolesObj instanceof java.util.Collection<?> roles) {
-                    for (Object r : roles) {
-                        if (r != null)
-                            roleNames.add(String.valueOf(r));
-                    }
+    private static java.util.Collection<org.springframework.security.core.GrantedAuthority> extractAuthorities(
+            org.springframework.security.oauth2.jwt.Jwt jwt) {
+        java.util.Set<String> roleNames = new java.util.LinkedHashSet<>();
+
+        // Standard Keycloak realm_access.roles
+        Object realmAccess = jwt.getClaims().get("realm_access");
+        if (realmAccess instanceof java.util.Map<?, ?> realm) {
+            Object rolesObj = realm.get("roles");
+            if (rolesObj instanceof java.util.Collection<?> roles) {
+                for (Object r : roles) {
+                    if (r != null)
+                        roleNames.add(String.valueOf(r));
                 }
             }
+        }
 
-            // Also gather client roles from resource_access.<client>.roles
-            Object resourceAccess = jwt.getClaims().get("resource_access");
-            if (resourceAccess instanceof java.util.Map<?, ?> resources) {
-                for (Object entryObj : resources.values()) {
-                    if (entryObj instanceof java.util.Map<?, ?> clientMap) {
-                        Object clientRoles = clientMap.get("roles");
-                        if (clientRoles instanceof java.util.Collection<?> roles) {
-                            for (Object r : roles) {
-                                if (r != null)
-                                    roleNames.add(String.valueOf(r));
-                            }
+        // Also gather client roles from resource_access.<client>.roles
+        Object resourceAccess = jwt.getClaims().get("resource_access");
+        if (resourceAccess instanceof java.util.Map<?, ?> resources) {
+            for (Object entryObj : resources.values()) {
+                if (entryObj instanceof java.util.Map<?, ?> clientMap) {
+                    Object clientRoles = clientMap.get("roles");
+                    if (clientRoles instanceof java.util.Collection<?> roles) {
+                        for (Object r : roles) {
+                            if (r != null)
+                                roleNames.add(String.valueOf(r));
                         }
                     }
                 }
             }
+        }
 
-            // Some realm configurations (current export) map roles directly to a top-level
-            // "roles" claim
-            Object directRoles = jwt.getClaims().get("roles");
-            if (directRoles instanceof java.util.Collection<?> roles) {
-                for (Object r : roles) {
-                    if (r != null)
-                        roleNames.add(String.valueOf(r));
-                }
+        // Some realm configurations (current export) map roles directly to a top-level
+        // "roles" claim
+        Object directRoles = jwt.getClaims().get("roles");
+        if (directRoles instanceof java.util.Collection<?> roles) {
+            for (Object r : roles) {
+                if (r != null)
+                    roleNames.add(String.valueOf(r));
             }
+        }
 
-            java.util.List<org.springframework.security.core.GrantedAuthority> authorities = new java.util.ArrayList<>();
-            for (String rawRole : roleNames) {
-                String role = rawRole.toUpperCase();
-                // Normalize any accidental leading ROLE_ (Keycloak or custom mappers sometimes
-                // include it)
-                if (role.startsWith("ROLE_")) {
-                    role = role.substring(5); // strip leading ROLE_
-                }
-                // Legacy mapping support: INSTRUCTOR -> TRAINER, ATHLETE -> MEMBER
-                if ("INSTRUCTOR".equals(role))
-                    role = "TRAINER";
-                if ("ATHLETE".equals(role))
-                    role = "MEMBER";
-                authorities.add(new org.springframework.security.core.authority.SimpleGrantedAuthority("ROLE_" + role));
+        java.util.List<org.springframework.security.core.GrantedAuthority> authorities = new java.util.ArrayList<>();
+        for (String rawRole : roleNames) {
+            String role = rawRole.toUpperCase();
+            // Normalize any accidental leading ROLE_ (Keycloak or custom mappers sometimes
+            // include it)
+            if (role.startsWith("ROLE_")) {
+                role = role.substring(5); // strip leading ROLE_
             }
-            return authorities;
-        });
-        return converter;
+            // Legacy mapping support: INSTRUCTOR -> TRAINER, ATHLETE -> MEMBER
+            if ("INSTRUCTOR".equals(role))
+                role = "TRAINER";
+            if ("ATHLETE".equals(role))
+                role = "MEMBER";
+            authorities.add(new org.springframework.security.core.authority.SimpleGrantedAuthority("ROLE_" + role));
+        }
+        return authorities;
     }
 
     @Bean
@@ -4,12 +4,20 @@ import com.gym.booking.dto.BillingReportDTO;
 import com.gym.booking.dto.UserDTO;
 import com.gym.booking.model.BillingEvent;
 import com.gym.booking.model.User;
+import com.gym.booking.service.BillingExportService;
 import com.gym.booking.service.BillingService;
+import com.gym.booking.service.IdempotencyService;
+import com.gym.booking.service.PrincipalResolver;
 import com.gym.booking.service.UserService;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.WebAsyncTask;
 
+import java.io.OutputStream;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
@@ -22,21 +30,35 @@ public class AdminController {
     private final UserService userService;
     private final BillingService billingService;
     private final com.gym.booking.repository.GymClassRepository gymClassRepository;
+    private final IdempotencyService idempotencyService;
+    private final PrincipalResolver principalResolver;
+    private final BillingExportService billingExportService;
+    private final com.gym.booking.service.AuditLogWriter auditLogWriter;
+    private final com.gym.booking.service.GymClassService gymClassService;
+    private final long exportTimeoutMs;
 
     public AdminController(UserService userService, BillingService billingService,
-            com.gym.booking.repository.GymClassRepository gymClassRepository) {
+            com.gym.booking.repository.GymClassRepository gymClassRepository,
+            IdempotencyService idempotencyService,
+            PrincipalResolver principalResolver,
+            BillingExportService billingExportService,
+            com.gym.booking.service.AuditLogWriter auditLogWriter,
+            com.gym.booking.service.GymClassService gymClassService,
+            @Value("${app.billing.export.timeout-ms:600000}") long exportTimeoutMs) {
         this.userService = userService;
         this.billingService = billingService;
         this.gymClassRepository = gymClassRepository;
+        this.idempotencyService = idempotencyService;
+        this.principalResolver = principalResolver;
+        this.billingExportService = billingExportService;
+        this.auditLogWriter = auditLogWriter;
+        this.gymClassService = gymClassService;
+        this.exportTimeoutMs = exportTimeoutMs;
     }
 
     @GetMapping("/members")
     public ResponseEntity<List<UserDTO>> getAllMembers() {
-        List<User> members = userService.findAllMembers();
-        List<UserDTO> memberDTOs = members.stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
-        return ResponseEntity.ok(memberDTOs);
+        return ResponseEntity.ok(userService.findAllMemberDTOs());
     }
 
     @PostMapping("/members/{userId}/base-cost")
@@ -122,8 +144,13 @@ public class AdminController {
     @PostMapping("/members/{userId}/promote-to-trainer")
     public ResponseEntity<UserDTO> promoteToTrainer(@PathVariable("userId") long userId) {
         User user = userService.findById(userId);
+        User.UserRole previousRole = user.getRole();
         user.setRole(User.UserRole.TRAINER);
         User updated = userService.createUser(user);
+        // Cached principals still carry the old role
+        principalResolver.evictUser(userId);
+        auditLogWriter.record("ROLE_CHANGED", "USER", userId, com.gym.booking.service.AuditMetadata.builder()
+                .change(previousRole, User.UserRole.TRAINER));
         return ResponseEntity.ok(convertToDTO(updated));
     }
 
@@ -141,6 +168,7 @@ public class AdminController {
             }
         }
         userService.deleteUser(userId);
+        principalResolver.evictUser(userId);
         return ResponseEntity.ok().build();
     }
 
@@ -172,10 +200,13 @@ public class AdminController {
             @RequestParam("endDate") String endDateStr) {
         LocalDateTime startDate = parseStartDate(startDateStr);
         LocalDateTime endDate = parseEndDate(endDateStr);
-        // Aggregate per member to match frontend AdminBilling view
+        // Aggregate per member to match frontend AdminBilling view: one query for
+        // the members and one for all events in range, grouped in memory
         List<User> members = userService.findAllMembers();
+        java.util.Map<Long, List<BillingEvent>> eventsByUser = billingService.getEventsByUserForDateRange(startDate,
+                endDate);
         List<BillingReportDTO> reports = members.stream().map(user -> {
-            List<BillingEvent> events = billingService.getUserEventsForDateRange(user.getId(), startDate, endDate);
+            List<BillingEvent> events = eventsByUser.getOrDefault(user.getId(), java.util.Collections.emptyList());
             BillingReportDTO dto = new BillingReportDTO();
             dto.setUserId(user.getId());
             dto.setUserName(user.getName());
@@ -189,10 +220,82 @@ public class AdminController {
         return ResponseEntity.ok(reports);
     }
 
+    // Totals per member over the range, from the daily billing rollups
+    @GetMapping("/billing/summary")
+    public ResponseEntity<List<com.gym.booking.dto.BillingSummaryDTO>> getBillingSummary(
+            @RequestParam("startDate") String startDateStr,
+            @RequestParam("endDate") String endDateStr,
+            @RequestParam(name = "userId", required = false) Long userId) {
+        return ResponseEntity.ok(billingService.getSummaryByUser(parseStartDate(startDateStr).toLocalDate(),
+                parseEndDate(endDateStr).toLocalDate(), userId));
+    }
+
+    // Day-by-day totals for the dashboard, from the daily billing rollups
+    @GetMapping("/billing/summary/daily")
+    public ResponseEntity<List<com.gym.booking.dto.BillingSummaryDTO>> getDailyBillingSummary(
+            @RequestParam("startDate") String startDateStr,
+            @RequestParam("endDate") String endDateStr,
+            @RequestParam(name = "userId", required = false) Long userId) {
+        return ResponseEntity.ok(billingService.getSummaryByDay(parseStartDate(startDateStr).toLocalDate(),
+                parseEndDate(endDateStr).toLocalDate(), userId));
+    }
+
+    @PostMapping("/billing/rollups/rebuild")
+    public ResponseEntity<java.util.Map<String, Integer>> rebuildBillingRollups() {
+        return ResponseEntity.ok(java.util.Map.of("rows", billingService.rebuildRollups()));
+    }
+
+    // Flat export of every billing event in the range, streamed row by row
+    // (format=csv|ndjson, gzip=true for a compressed download). Runs as its own
+    // async task so only the export gets the long timeout.
+    @GetMapping("/billing/export")
+    public WebAsyncTask<Void> exportBillingEvents(
+            @RequestParam("startDate") String startDateStr,
+            @RequestParam("endDate") String endDateStr,
+            @RequestParam(name = "format", defaultValue = "csv") String formatStr,
+            @RequestParam(name = "gzip", defaultValue = "false") boolean gzip,
+            HttpServletResponse response) {
+        LocalDateTime startDate = parseStartDate(startDateStr);
+        LocalDateTime endDate = parseEndDate(endDateStr);
+        BillingExportService.Format format = BillingExportService.Format.parse(formatStr);
+        String fileName = "billing-" + startDate.toLocalDate() + "-" + endDate.toLocalDate() + "."
+                + format.getExtension() + (gzip ? ".gz" : "");
+
+        response.setContentType(gzip ? "application/gzip" : format.getContentType());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"");
+        return new WebAsyncTask<>(exportTimeoutMs, () -> {
+            OutputStream out = response.getOutputStream();
+            if (gzip) {
+                java.util.zip.GZIPOutputStream gz = new java.util.zip.GZIPOutputStream(out, 8192);
+                billingExportService.export(startDate, endDate, format, gz);
+                gz.finish();
+            } else {
+                billingExportService.export(startDate, endDate, format, out);
+            }
+            out.flush();
+            return null;
+        });
+    }
+
     @PostMapping("/billing/settle")
-    public ResponseEntity<?> settleBillingEvents(@RequestBody List<Long> eventIds) {
-        billingService.markAsSettledBulk(eventIds);
-        return ResponseEntity.ok().build();
+    public ResponseEntity<?> settleBillingEvents(@RequestBody List<Long> eventIds,
+            @RequestHeader(name = IdempotencyService.HEADER, required = false) String idempotencyKey,
+            org.springframework.security.core.Authentication authentication) {
+        return idempotencyService.execute(idempotencyKey, authentication.getName(), "POST /api/admin/billing/settle",
+                String.valueOf(eventIds), () -> ResponseEntity.ok(billingService.markAsSettledBulk(eventIds)));
+    }
+
+    // Filter form of bulk settle: every unsettled event of a member dated
+    // before the given date (exclusive; a plain date means its start)
+    @PostMapping("/billing/settle/unsettled")
+    public ResponseEntity<?> settleUnsettledBillingEvents(@RequestParam("userId") Long userId,
+            @RequestParam("before") String beforeStr,
+            @RequestHeader(name = IdempotencyService.HEADER, required = false) String idempotencyKey,
+            org.springframework.security.core.Authentication authentication) {
+        LocalDateTime before = parseStartDate(beforeStr);
+        return idempotencyService.execute(idempotencyKey, authentication.getName(),
+                "POST /api/admin/billing/settle/unsettled", userId + "|" + before,
+                () -> ResponseEntity.ok(billingService.settleUnsettledForUser(userId, before)));
     }
 
     @PostMapping("/billing/events/{eventId}/settle/payment")
@@ -211,6 +314,20 @@ public class AdminController {
         }
     }
 
+    // Cancel every scheduled class (and its bookings) starting in the range,
+    // e.g. a day the gym is closed; returns the members to notify
+    @PostMapping("/facility/closures")
+    public ResponseEntity<?> closeFacility(@RequestParam("startDate") String startDateStr,
+            @RequestParam("endDate") String endDateStr,
+            @RequestHeader(name = IdempotencyService.HEADER, required = false) String idempotencyKey,
+            org.springframework.security.core.Authentication authentication) {
+        LocalDateTime startDate = parseStartDate(startDateStr);
+        LocalDateTime endDate = parseEndDate(endDateStr);
+        return idempotencyService.execute(idempotencyKey, authentication.getName(),
+                "POST /api/admin/facility/closures", startDate + "|" + endDate,
+                () -> ResponseEntity.ok(gymClassService.closeFacility(startDate, endDate)));
+    }
+
     @GetMapping("/trainers")
     public ResponseEntity<List<UserDTO>> getAllTrainers() {
         List<User> trainers = userService.findAllTrainers();
@@ -1,43 +1,94 @@
 package com.gym.booking.controller;
 
+import com.gym.booking.dto.WalletTransactionDTO;
 import com.gym.booking.model.WalletTransaction;
+import com.gym.booking.service.IdempotencyService;
 import com.gym.booking.service.WalletService;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.List;
 
 @RestController
 @RequestMapping("/api/admin/members/{id}/wallet")
 @PreAuthorize("hasRole('ADMIN')")
 public class AdminWalletController {
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 500;
+
     private final WalletService walletService;
+    private final IdempotencyService idempotencyService;
 
-    public AdminWalletController(WalletService walletService) {
+    public AdminWalletController(WalletService walletService, IdempotencyService idempotencyService) {
         this.walletService = walletService;
+        this.idempotencyService = idempotencyService;
     }
 
     @PostMapping("/topup")
-    public ResponseEntity<WalletTransaction> topUp(@PathVariable Long id, @RequestBody TopUpRequest req) {
-        WalletTransaction tx = walletService.topUp(id, req.amount, req.reference);
-        return ResponseEntity.ok(tx);
+    public ResponseEntity<?> topUp(@PathVariable Long id, @RequestBody TopUpRequest req,
+            @RequestHeader(name = IdempotencyService.HEADER, required = false) String idempotencyKey,
+            Authentication authentication) {
+        return idempotencyService.execute(idempotencyKey, authentication.getName(),
+                "POST /api/admin/members/" + id + "/wallet/topup", req.fingerprint(), () -> {
+                    WalletTransaction tx = walletService.topUp(id, req.amount, req.reference);
+                    return ResponseEntity.ok(convertToDTO(tx));
+                });
     }
 
     @PostMapping("/set")
-    public ResponseEntity<WalletTransaction> set(@PathVariable Long id, @RequestBody TopUpRequest req) {
-        WalletTransaction tx = walletService.setBalance(id, req.amount, req.reference);
-        return ResponseEntity.ok(tx);
+    public ResponseEntity<?> set(@PathVariable Long id, @RequestBody TopUpRequest req,
+            @RequestHeader(name = IdempotencyService.HEADER, required = false) String idempotencyKey,
+            Authentication authentication) {
+        return idempotencyService.execute(idempotencyKey, authentication.getName(),
+                "POST /api/admin/members/" + id + "/wallet/set", req.fingerprint(), () -> {
+                    WalletTransaction tx = walletService.setBalance(id, req.amount, req.reference);
+                    return ResponseEntity.ok(convertToDTO(tx));
+                });
+    }
+
+    // Current balance, or the balance as of a point in time when asOf is given
+    @GetMapping("/balance")
+    public ResponseEntity<java.util.Map<String, Object>> balance(@PathVariable Long id,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime asOf) {
+        java.util.Map<String, Object> body = new java.util.LinkedHashMap<>();
+        body.put("userId", id);
+        body.put("balance", asOf != null ? walletService.getBalanceAsOf(id, asOf) : walletService.getBalance(id));
+        if (asOf != null) {
+            body.put("asOf", asOf);
+        }
+        return ResponseEntity.ok(body);
     }
 
+    // Keyset-paginated history with running balance, newest first; follow the
+    // Link rel="next" header for the next page
     @GetMapping("/transactions")
-    public ResponseEntity<List<WalletTransaction>> transactions(@PathVariable Long id) {
-        return ResponseEntity.ok(walletService.getTransactions(id));
+    public ResponseEntity<List<WalletTransactionDTO>> transactions(@PathVariable Long id,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime beforeAt,
+            @RequestParam(required = false) Long beforeId,
+            @RequestParam(defaultValue = "" + DEFAULT_PAGE_SIZE) int limit) {
+        int pageSize = KeysetPage.pageSize(limit, MAX_PAGE_SIZE);
+        List<WalletTransactionDTO> entries = walletService.getTransactionPage(id, beforeAt, beforeId, pageSize + 1);
+        return KeysetPage.respond(entries, pageSize, "beforeAt", WalletTransactionDTO::getCreatedAt,
+                "beforeId", WalletTransactionDTO::getId);
+    }
+
+    private WalletTransactionDTO convertToDTO(WalletTransaction tx) {
+        return new WalletTransactionDTO(tx.getId(), tx.getAmount(), tx.getType(), tx.getReference(),
+                tx.getCreatedAt(), null);
     }
 
     public static class TopUpRequest {
         public BigDecimal amount;
         public String reference;
+
+        String fingerprint() {
+            return (amount != null ? amount.stripTrailingZeros().toPlainString() : "") + "|"
+                    + (reference != null ? reference : "");
+        }
     }
 }
@@ -0,0 +1,49 @@
+package com.gym.booking.controller;
+
+import com.gym.booking.dto.AuditLogDTO;
+import com.gym.booking.service.AuditLogService;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/admin/audit")
+@PreAuthorize("hasRole('ADMIN')")
+public class AuditLogController {
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 500;
+
+    private final AuditLogService auditLogService;
+
+    public AuditLogController(AuditLogService auditLogService) {
+        this.auditLogService = auditLogService;
+    }
+
+    // Keyset-paginated, newest first; follow the Link rel="next" header for
+    // the next page. E.g. wallet changes over 50 for booking 123:
+    // ?action=WALLET_*&bookingId=123&minAmount=50
+    @GetMapping
+    public ResponseEntity<List<AuditLogDTO>> getAuditLogs(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) Long actorId,
+            @RequestParam(required = false) String action,
+            @RequestParam(required = false) String targetType,
+            @RequestParam(required = false) Long targetId,
+            @RequestParam(required = false) String metadata,
+            @RequestParam(required = false) Long bookingId,
+            @RequestParam(required = false) java.math.BigDecimal minAmount,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime beforeAt,
+            @RequestParam(required = false) Long beforeId,
+            @RequestParam(defaultValue = "" + DEFAULT_PAGE_SIZE) int limit) {
+        int pageSize = KeysetPage.pageSize(limit, MAX_PAGE_SIZE);
+        List<AuditLogDTO> entries = auditLogService.findPage(from, to, actorId, action, targetType, targetId,
+                metadata, bookingId, minAmount, beforeAt, beforeId, pageSize + 1);
+        return KeysetPage.respond(entries, pageSize, "beforeAt", AuditLogDTO::getCreatedAt,
+                "beforeId", AuditLogDTO::getId);
+    }
+}
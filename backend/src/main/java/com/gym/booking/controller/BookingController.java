@@ -9,10 +9,16 @@ import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 import java.util.List;
 import java.util.stream.Collectors;
-import java.util.Map;
 
-import com.gym.booking.service.UserService;
-import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import com.gym.booking.dto.BookingTicketDTO;
+import com.gym.booking.dto.LotteryEntryDTO;
+import com.gym.booking.dto.RosterCompletionResultDTO;
+import com.gym.booking.model.LotteryEntry;
+import com.gym.booking.service.BookingAdmissionService;
+import com.gym.booking.service.BookingQueueService;
+import com.gym.booking.service.IdempotencyService;
+import com.gym.booking.service.LotteryService;
+import com.gym.booking.service.PrincipalResolver;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -21,30 +27,108 @@ import org.slf4j.LoggerFactory;
 public class BookingController {
     private static final Logger log = LoggerFactory.getLogger(BookingController.class);
     private final BookingService bookingService;
-    private final UserService userService;
+    private final PrincipalResolver principalResolver;
     private final com.gym.booking.service.GymClassService gymClassService;
+    private final BookingAdmissionService bookingAdmissionService;
+    private final BookingQueueService bookingQueueService;
+    private final LotteryService lotteryService;
+    private final IdempotencyService idempotencyService;
 
-    public BookingController(BookingService bookingService, UserService userService,
-            com.gym.booking.service.GymClassService gymClassService) {
+    public BookingController(BookingService bookingService, PrincipalResolver principalResolver,
+            com.gym.booking.service.GymClassService gymClassService,
+            BookingAdmissionService bookingAdmissionService,
+            BookingQueueService bookingQueueService,
+            LotteryService lotteryService,
+            IdempotencyService idempotencyService) {
         this.bookingService = bookingService;
-        this.userService = userService;
+        this.principalResolver = principalResolver;
         this.gymClassService = gymClassService;
+        this.bookingAdmissionService = bookingAdmissionService;
+        this.bookingQueueService = bookingQueueService;
+        this.lotteryService = lotteryService;
+        this.idempotencyService = idempotencyService;
     }
 
     @PreAuthorize("isAuthenticated()")
     @PostMapping
-    public ResponseEntity<BookingDTO> createBooking(@RequestParam(required = false) Long userId,
+    public ResponseEntity<?> createBooking(@RequestParam(required = false) Long userId,
             @RequestParam Long classInstanceId,
+            @RequestParam(name = "queued", defaultValue = "false") boolean queued,
+            @RequestHeader(name = IdempotencyService.HEADER, required = false) String idempotencyKey,
             Authentication authentication) {
-        // Resolve current user from JWT
-        Long currentUserId;
-        if (authentication instanceof JwtAuthenticationToken jwtAuth) {
-            Map<String, Object> claims = new java.util.HashMap<>(jwtAuth.getToken().getClaims());
-            var user = userService.findOrCreateFromJwtClaims(claims);
-            currentUserId = user.getId();
-        } else {
-            throw new IllegalArgumentException("Unable to resolve current user from authentication token");
+        // A double submit or client retry with the same key replays the first outcome
+        return idempotencyService.execute(idempotencyKey, authentication.getName(), "POST /api/bookings",
+                "userId=" + userId + "&classInstanceId=" + classInstanceId,
+                () -> doCreateBooking(userId, classInstanceId, queued, authentication));
+    }
+
+    private ResponseEntity<?> doCreateBooking(Long userId, Long classInstanceId, boolean queued,
+            Authentication authentication) {
+        // Hot classes (explicit opt-in or attempt rate over threshold) get a
+        // ticket immediately and are processed by the per-class queue
+        if (bookingQueueService.recordAttemptAndCheckQueued(classInstanceId) || queued) {
+            Long effectiveUserId = resolveEffectiveUserId(userId, authentication);
+            BookingQueueService.BookingTicket ticket = bookingQueueService.submit(effectiveUserId, classInstanceId,
+                    authentication.getName());
+            return ResponseEntity.accepted()
+                    .location(java.net.URI.create("/api/bookings/tickets/" + ticket.getId()))
+                    .body(convertToTicketDTO(ticket));
+        }
+        // The gate may reject a full class before the user is resolved
+        Booking booking = bookingAdmissionService.admit(classInstanceId,
+                () -> resolveEffectiveUserId(userId, authentication));
+        return ResponseEntity.ok(convertToDTO(booking));
+    }
+
+    /**
+     * Enter the lottery of a LOTTERY class. Seats are allocated when the entry
+     * window closes; the outcome shows up as a BOOKED or WAITLISTED booking.
+     */
+    @PreAuthorize("isAuthenticated()")
+    @PostMapping("/lottery")
+    public ResponseEntity<LotteryEntryDTO> enterLottery(@RequestParam(required = false) Long userId,
+            @RequestParam Long classInstanceId,
+            Authentication authentication) {
+        Long effectiveUserId = resolveEffectiveUserId(userId, authentication);
+        LotteryEntry entry = lotteryService.enter(effectiveUserId, classInstanceId);
+        LotteryEntryDTO dto = new LotteryEntryDTO();
+        dto.setId(entry.getId());
+        dto.setUserId(effectiveUserId);
+        dto.setClassInstanceId(classInstanceId);
+        dto.setLotteryClosesAt(entry.getClassInstance().getLotteryClosesAt());
+        dto.setEntries(lotteryService.countEntries(classInstanceId));
+        dto.setEnteredAt(entry.getCreatedAt());
+        return ResponseEntity.ok(dto);
+    }
+
+    /**
+     * Poll a queued booking ticket. With {@code waitSeconds} > 0 the request is
+     * held (asynchronously) until the ticket completes or the wait elapses.
+     */
+    @PreAuthorize("isAuthenticated()")
+    @GetMapping("/tickets/{ticketId}")
+    public java.util.concurrent.CompletableFuture<ResponseEntity<BookingTicketDTO>> getTicket(
+            @PathVariable String ticketId,
+            @RequestParam(name = "waitSeconds", defaultValue = "0") int waitSeconds,
+            Authentication authentication) {
+        var ticket = bookingQueueService.findTicket(ticketId).orElse(null);
+        if (ticket == null) {
+            return java.util.concurrent.CompletableFuture.completedFuture(ResponseEntity.notFound().build());
+        }
+        boolean isPrivileged = authentication.getAuthorities().stream()
+                .map(org.springframework.security.core.GrantedAuthority::getAuthority)
+                .anyMatch(a -> "ROLE_ADMIN".equals(a) || "ROLE_TRAINER".equals(a));
+        if (!isPrivileged && !authentication.getName().equals(ticket.getOwner())) {
+            return java.util.concurrent.CompletableFuture.completedFuture(ResponseEntity.status(403).build());
         }
+        java.time.Duration wait = java.time.Duration.ofSeconds(Math.max(0, Math.min(waitSeconds, 30)));
+        return bookingQueueService.awaitTicket(ticket, wait)
+                .thenApply(t -> ResponseEntity.ok(convertToTicketDTO(t)));
+    }
+
+    private Long resolveEffectiveUserId(Long userId, Authentication authentication) {
+        // Resolve current user from JWT
+        Long currentUserId = principalResolver.require(authentication).userId();
 
         Long effectiveUserId = currentUserId;
         // Allow booking on behalf of another user only for ADMIN/TRAINER
@@ -56,24 +140,22 @@ public class BookingController {
                 effectiveUserId = userId;
             }
         }
-        Booking booking = bookingService.createBooking(effectiveUserId, classInstanceId);
-        return ResponseEntity.ok(convertToDTO(booking));
+        return effectiveUserId;
     }
 
     @PreAuthorize("isAuthenticated()")
     @PutMapping("/{id}/cancel")
     public ResponseEntity<?> cancelBooking(@PathVariable Long id, Authentication authentication) {
-        if (!(authentication instanceof JwtAuthenticationToken jwtAuth)) {
+        var currentUser = principalResolver.resolve(authentication).orElse(null);
+        if (currentUser == null) {
             return ResponseEntity.status(401).build();
         }
-        Map<String, Object> claims = new java.util.HashMap<>(jwtAuth.getToken().getClaims());
-        var currentUser = userService.findOrCreateFromJwtClaims(claims);
         // Ownership or privileged role check
         Booking booking = bookingService.findById(id);
         boolean isPrivileged = authentication.getAuthorities().stream()
                 .map(org.springframework.security.core.GrantedAuthority::getAuthority)
                 .anyMatch(a -> "ROLE_ADMIN".equals(a) || "ROLE_TRAINER".equals(a));
-        if (!isPrivileged && !booking.getUser().getId().equals(currentUser.getId())) {
+        if (!isPrivileged && !booking.getUser().getId().equals(currentUser.userId())) {
             return ResponseEntity.status(403)
                     .body(java.util.Map.of("message", "You may only cancel your own bookings"));
         }
@@ -88,32 +170,25 @@ public class BookingController {
         return ResponseEntity.ok().build();
     }
 
+    @PreAuthorize("hasRole('TRAINER')")
+    @PostMapping("/class/{classInstanceId}/complete")
+    public ResponseEntity<RosterCompletionResultDTO> completeRoster(@PathVariable Long classInstanceId,
+            @RequestBody RosterCompletionRequest request) {
+        return ResponseEntity.ok(bookingService.completeRoster(classInstanceId, request.attended,
+                request.noShow));
+    }
+
     @PreAuthorize("hasAnyRole('ADMIN', 'MEMBER')")
     @GetMapping("/user/{userId}")
     public ResponseEntity<List<BookingDTO>> getUserBookings(@PathVariable Long userId) {
-        List<Booking> bookings = bookingService.findByUser(userId);
-        List<BookingDTO> bookingDTOs = bookings.stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
-        return ResponseEntity.ok(bookingDTOs);
+        return ResponseEntity.ok(bookingService.findDTOsByUser(userId));
     }
 
     @PreAuthorize("isAuthenticated()")
     @GetMapping("/me")
     public ResponseEntity<List<BookingDTO>> getMyBookings(Authentication authentication) {
-        Long effectiveUserId;
-        if (authentication instanceof JwtAuthenticationToken jwtAuth) {
-            java.util.Map<String, Object> claims = new java.util.HashMap<>(jwtAuth.getToken().getClaims());
-            var user = userService.findOrCreateFromJwtClaims(claims);
-            effectiveUserId = user.getId();
-        } else {
-            throw new IllegalArgumentException("Unable to resolve current user from authentication token");
-        }
-        List<Booking> bookings = bookingService.findByUser(effectiveUserId);
-        List<BookingDTO> bookingDTOs = bookings.stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
-        return ResponseEntity.ok(bookingDTOs);
+        Long effectiveUserId = principalResolver.require(authentication).userId();
+        return ResponseEntity.ok(bookingService.findDTOsByUser(effectiveUserId));
     }
 
     @PreAuthorize("isAuthenticated()")
@@ -121,11 +196,10 @@ public class BookingController {
     public ResponseEntity<List<BookingDTO>> getClassBookings(@PathVariable("classInstanceId") long classInstanceId,
             Authentication authentication) {
         // Resolve current user and authorize: admin OR instructor assigned to the class
-        if (!(authentication instanceof JwtAuthenticationToken jwtAuth)) {
+        var currentUser = principalResolver.resolve(authentication).orElse(null);
+        if (currentUser == null) {
             return ResponseEntity.status(401).build();
         }
-        java.util.Map<String, Object> claims = new java.util.HashMap<>(jwtAuth.getToken().getClaims());
-        var currentUser = userService.findOrCreateFromJwtClaims(claims);
 
         // Authorize based on token authorities (not persisted role)
         boolean isAdmin = authentication.getAuthorities().stream()
@@ -141,24 +215,20 @@ public class BookingController {
                     .sorted()
                     .collect(java.util.stream.Collectors.joining(","));
             log.debug("AttendeesAccess classId={} userId={} isAdmin={} isTrainer={} auth=[{}]", classInstanceId,
-                    currentUser.getId(), isAdmin, isTrainer, authorities);
+                    currentUser.userId(), isAdmin, isTrainer, authorities);
         }
 
         // Allow all staff (ADMIN or TRAINER) to view attendees
         if (!(isAdmin || isTrainer)) {
             var gymClass = gymClassService.findById(classInstanceId);
             boolean isInstructorForClass = gymClass.getTrainer() != null &&
-                    gymClass.getTrainer().getId().equals(currentUser.getId());
+                    gymClass.getTrainer().getId().equals(currentUser.userId());
             if (!isInstructorForClass) {
                 return ResponseEntity.status(403)
                         .body(java.util.Collections.emptyList());
             }
         }
-        List<Booking> bookings = bookingService.findByClassInstance(classInstanceId);
-        List<BookingDTO> bookingDTOs = bookings.stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
-        return ResponseEntity.ok(bookingDTOs);
+        return ResponseEntity.ok(bookingService.findDTOsByClassInstance(classInstanceId));
     }
 
     @PreAuthorize("permitAll()")
@@ -169,6 +239,10 @@ public class BookingController {
     }
 
     private BookingDTO convertToDTO(Booking booking) {
+        return convertToDTO(booking, bookingService.getWaitlistRank(booking));
+    }
+
+    private BookingDTO convertToDTO(Booking booking, Integer waitlistRank) {
         BookingDTO dto = new BookingDTO();
         dto.setId(booking.getId());
         dto.setUserId(booking.getUser().getId());
@@ -179,6 +253,24 @@ public class BookingController {
         dto.setAttendedAt(booking.getAttendedAt());
         dto.setCompletedAt(booking.getAttendedAt());
         dto.setBookedAt(booking.getCreatedAt());
+        dto.setWaitlistPosition(waitlistRank);
+        return dto;
+    }
+
+    private BookingTicketDTO convertToTicketDTO(BookingQueueService.BookingTicket ticket) {
+        BookingTicketDTO dto = new BookingTicketDTO();
+        dto.setTicketId(ticket.getId());
+        dto.setClassInstanceId(ticket.getClassInstanceId());
+        dto.setStatus(ticket.getStatus().name());
+        dto.setBookingId(ticket.getBookingId());
+        dto.setMessage(ticket.getMessage());
+        dto.setCreatedAt(ticket.getCreatedAt());
+        dto.setCompletedAt(ticket.getCompletedAt());
         return dto;
     }
-}
\ No newline at end of file
+
+    public static class RosterCompletionRequest {
+        public List<Long> attended;
+        public List<Long> noShow;
+    }
+}
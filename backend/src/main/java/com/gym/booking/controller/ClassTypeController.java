@@ -3,7 +3,7 @@ package com.gym.booking.controller;
 import com.gym.booking.dto.ClassTypeDTO;
 import com.gym.booking.model.ClassType;
 import com.gym.booking.service.ClassTypeService;
-import com.gym.booking.service.UserService;
+import com.gym.booking.service.PrincipalResolver;
 import jakarta.validation.Valid;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -22,11 +22,11 @@ import org.slf4j.LoggerFactory;
 public class ClassTypeController {
     private static final Logger log = LoggerFactory.getLogger(ClassTypeController.class);
     private final ClassTypeService classTypeService;
-    private final UserService userService;
+    private final PrincipalResolver principalResolver;
 
-    public ClassTypeController(ClassTypeService classTypeService, UserService userService) {
+    public ClassTypeController(ClassTypeService classTypeService, PrincipalResolver principalResolver) {
         this.classTypeService = classTypeService;
-        this.userService = userService;
+        this.principalResolver = principalResolver;
     }
 
     @PreAuthorize("isAuthenticated()")
@@ -34,20 +34,19 @@ public class ClassTypeController {
     public ResponseEntity<ClassTypeDTO> createClassType(@Valid @RequestBody ClassTypeDTO classTypeDTO,
             Authentication authentication) {
         // Authorize using persisted user role to avoid dependency on token authorities
-        if (authentication instanceof org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken jwtAuth) {
-            java.util.Map<String, Object> claims = new java.util.HashMap<>(jwtAuth.getToken().getClaims());
-            com.gym.booking.model.User me = userService.findOrCreateFromJwtClaims(claims);
-            if (me.getRole() != com.gym.booking.model.User.UserRole.ADMIN
-                    && me.getRole() != com.gym.booking.model.User.UserRole.TRAINER) {
-                if (log.isDebugEnabled()) {
-                    String authorities = authentication.getAuthorities().stream()
-                            .map(org.springframework.security.core.GrantedAuthority::getAuthority)
-                            .sorted()
-                            .collect(java.util.stream.Collectors.joining(","));
-                    log.debug("ClassTypeCreate denied auth=[{}] role=[{}]", authorities, me.getRole());
-                }
-                return ResponseEntity.status(403).build();
+        var me = principalResolver.resolve(authentication).orElse(null);
+        if (me == null) {
+            return ResponseEntity.status(401).build();
+        }
+        if (!me.isStaff()) {
+            if (log.isDebugEnabled()) {
+                String authorities = authentication.getAuthorities().stream()
+                        .map(org.springframework.security.core.GrantedAuthority::getAuthority)
+                        .sorted()
+                        .collect(java.util.stream.Collectors.joining(","));
+                log.debug("ClassTypeCreate denied auth=[{}] role=[{}]", authorities, me.role());
             }
+            return ResponseEntity.status(403).build();
         }
         ClassType classType = convertToEntity(classTypeDTO);
         ClassType savedClassType = classTypeService.createClassType(Objects.requireNonNull(classType));
@@ -58,13 +57,12 @@ public class ClassTypeController {
     @PutMapping("/{id}")
     public ResponseEntity<ClassTypeDTO> updateClassType(@PathVariable @NonNull Long id,
             @Valid @RequestBody ClassTypeDTO classTypeDTO, Authentication authentication) {
-        if (authentication instanceof org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken jwtAuth) {
-            java.util.Map<String, Object> claims = new java.util.HashMap<>(jwtAuth.getToken().getClaims());
-            com.gym.booking.model.User me = userService.findOrCreateFromJwtClaims(claims);
-            if (me.getRole() != com.gym.booking.model.User.UserRole.ADMIN
-                    && me.getRole() != com.gym.booking.model.User.UserRole.TRAINER) {
-                return ResponseEntity.status(403).build();
-            }
+        var me = principalResolver.resolve(authentication).orElse(null);
+        if (me == null) {
+            return ResponseEntity.status(401).build();
+        }
+        if (!me.isStaff()) {
+            return ResponseEntity.status(403).build();
         }
         ClassType classType = convertToEntity(classTypeDTO);
         ClassType updatedClassType = classTypeService.updateClassType(Objects.requireNonNull(id),
@@ -75,13 +73,12 @@ public class ClassTypeController {
     @PreAuthorize("isAuthenticated()")
     @DeleteMapping("/{id}")
     public ResponseEntity<?> deleteClassType(@PathVariable @NonNull Long id, Authentication authentication) {
-        if (authentication instanceof org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken jwtAuth) {
-            java.util.Map<String, Object> claims = new java.util.HashMap<>(jwtAuth.getToken().getClaims());
-            com.gym.booking.model.User me = userService.findOrCreateFromJwtClaims(claims);
-            if (me.getRole() != com.gym.booking.model.User.UserRole.ADMIN
-                    && me.getRole() != com.gym.booking.model.User.UserRole.TRAINER) {
-                return ResponseEntity.status(403).build();
-            }
+        var me = principalResolver.resolve(authentication).orElse(null);
+        if (me == null) {
+            return ResponseEntity.status(401).build();
+        }
+        if (!me.isStaff()) {
+            return ResponseEntity.status(403).build();
         }
         classTypeService.deleteClassType(Objects.requireNonNull(id));
         return ResponseEntity.ok().build();
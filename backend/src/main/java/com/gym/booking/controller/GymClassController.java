@@ -4,26 +4,30 @@ import com.gym.booking.dto.GymClassDTO;
 import com.gym.booking.model.GymClass;
 import com.gym.booking.service.GymClassService;
 import com.gym.booking.service.ClassTypeService;
-import com.gym.booking.service.UserService;
+import com.gym.booking.service.PrincipalResolver;
 import jakarta.validation.Valid;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import java.time.LocalDateTime;
 import java.util.List;
-import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/classes")
 public class GymClassController {
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 500;
+
     private final GymClassService gymClassService;
     private final ClassTypeService classTypeService;
-    private final UserService userService;
+    private final PrincipalResolver principalResolver;
 
     public GymClassController(GymClassService gymClassService, ClassTypeService classTypeService,
-            UserService userService) {
+            PrincipalResolver principalResolver) {
         this.gymClassService = gymClassService;
         this.classTypeService = classTypeService;
-        this.userService = userService;
+        this.principalResolver = principalResolver;
     }
 
     @PreAuthorize("isAuthenticated()")
@@ -32,13 +36,12 @@ public class GymClassController {
             org.springframework.security.core.Authentication authentication) {
         // Authorize based on persisted role of current user (works even if token lacks
         // role claims)
-        if (authentication instanceof org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken jwtAuth) {
-            java.util.Map<String, Object> claims = new java.util.HashMap<>(jwtAuth.getToken().getClaims());
-            com.gym.booking.model.User me = userService.findOrCreateFromJwtClaims(claims);
-            if (me.getRole() != com.gym.booking.model.User.UserRole.ADMIN
-                    && me.getRole() != com.gym.booking.model.User.UserRole.TRAINER) {
-                return ResponseEntity.status(403).build();
-            }
+        var me = principalResolver.resolve(authentication).orElse(null);
+        if (me == null) {
+            return ResponseEntity.status(401).build();
+        }
+        if (!me.isStaff()) {
+            return ResponseEntity.status(403).build();
         }
         GymClass gymClass = convertToEntity(gymClassDTO);
         GymClass savedClass = gymClassService.createGymClass(java.util.Objects.requireNonNull(gymClass),
@@ -63,24 +66,47 @@ public class GymClassController {
         return ResponseEntity.ok().build();
     }
 
+    /**
+     * Classes starting in [from, to) (from defaults to today), ordered by start
+     * time and id, one page at a time. A full page carries a Link rel="next"
+     * header with the keyset cursor (afterStart, afterId) for the next one.
+     * {@code ids} returns just those classes (at most one page worth), e.g.
+     * the classes behind a member's bookings. {@code all=true} restores the
+     * legacy unbounded listing.
+     */
     @PreAuthorize("permitAll()")
     @GetMapping
-    public ResponseEntity<List<GymClassDTO>> getAllGymClasses() {
-        List<GymClass> classes = gymClassService.findAll();
-        List<GymClassDTO> classDTOs = classes.stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
-        return ResponseEntity.ok(classDTOs);
+    public ResponseEntity<List<GymClassDTO>> getAllGymClasses(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) GymClass.ClassKind kind,
+            @RequestParam(required = false) Long classTypeId,
+            @RequestParam(required = false) Long trainerId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime afterStart,
+            @RequestParam(required = false) Long afterId,
+            @RequestParam(defaultValue = "" + DEFAULT_PAGE_SIZE) int limit,
+            @RequestParam(required = false) List<Long> ids,
+            @RequestParam(defaultValue = "false") boolean all) {
+        if (ids != null) {
+            if (ids.size() > MAX_PAGE_SIZE) {
+                throw new IllegalArgumentException("At most " + MAX_PAGE_SIZE + " ids per request");
+            }
+            return ResponseEntity.ok(gymClassService.findDTOsByIds(ids));
+        }
+        if (all) {
+            return ResponseEntity.ok(gymClassService.findAllDTOs());
+        }
+        int pageSize = KeysetPage.pageSize(limit, MAX_PAGE_SIZE);
+        List<GymClassDTO> classDTOs = gymClassService.findPage(from, to, kind, classTypeId, trainerId, afterStart,
+                afterId, pageSize + 1);
+        return KeysetPage.respond(classDTOs, pageSize, "afterStart", GymClassDTO::getStartTime,
+                "afterId", GymClassDTO::getId);
     }
 
     @PreAuthorize("hasAnyRole('ADMIN', 'TRAINER')")
     @GetMapping("/trainer/{trainerId}")
     public ResponseEntity<List<GymClassDTO>> getGymClassesByTrainer(@PathVariable Long trainerId) {
-        List<GymClass> classes = gymClassService.findByTrainer(java.util.Objects.requireNonNull(trainerId));
-        List<GymClassDTO> classDTOs = classes.stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
-        return ResponseEntity.ok(classDTOs);
+        return ResponseEntity.ok(gymClassService.findDTOsByTrainer(java.util.Objects.requireNonNull(trainerId)));
     }
 
     // Backward-compatibility alias (to be removed after UI migration)
@@ -106,6 +132,13 @@ public class GymClassController {
         dto.setEndTime(gymClass.getEndTime());
         dto.setLocation(gymClass.getLocation());
         dto.setKind(gymClass.getKind() != null ? gymClass.getKind().name() : GymClass.ClassKind.GROUP.name());
+        dto.setAllocationMode(gymClass.getAllocationMode() != null ? gymClass.getAllocationMode().name()
+                : GymClass.AllocationMode.FIRST_COME.name());
+        dto.setLotteryClosesAt(gymClass.getLotteryClosesAt());
+        // Counter column is on the row already, so listings need no per-class count query
+        int booked = gymClass.getBookedCount() != null ? gymClass.getBookedCount() : 0;
+        dto.setBookedCount(booked);
+        dto.setRemainingSeats(gymClass.getCapacity() != null ? Math.max(gymClass.getCapacity() - booked, 0) : null);
         return dto;
     }
 
@@ -122,6 +155,10 @@ public class GymClassController {
         if (dto.getKind() != null) {
             gymClass.setKind(GymClass.ClassKind.valueOf(dto.getKind()));
         }
+        if (dto.getAllocationMode() != null) {
+            gymClass.setAllocationMode(GymClass.AllocationMode.valueOf(dto.getAllocationMode()));
+        }
+        gymClass.setLotteryClosesAt(dto.getLotteryClosesAt());
         if (dto.getClassTypeId() != null) {
             gymClass.setClassType(classTypeService.findById(java.util.Objects.requireNonNull(dto.getClassTypeId())));
         }
@@ -0,0 +1,42 @@
+package com.gym.booking.controller;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Response side of the keyset-paginated listings. Services are asked for one
+ * row more than the page size; when that extra row comes back the page is
+ * trimmed and a Link rel="next" header carries the last row's cursor, the
+ * request's other parameters unchanged.
+ */
+final class KeysetPage {
+
+    private KeysetPage() {
+    }
+
+    static int pageSize(int limit, int max) {
+        return Math.max(1, Math.min(limit, max));
+    }
+
+    static <T> ResponseEntity<List<T>> respond(List<T> rows, int pageSize, String positionParam,
+            Function<T, Object> position, String idParam, Function<T, Object> id) {
+        if (rows.size() <= pageSize) {
+            return ResponseEntity.ok(rows);
+        }
+        List<T> page = rows.subList(0, pageSize);
+        T last = page.get(page.size() - 1);
+        String next = ServletUriComponentsBuilder.fromCurrentRequest()
+                .replaceQueryParam(positionParam, position.apply(last))
+                .replaceQueryParam(idParam, id.apply(last))
+                .replaceQueryParam("limit", pageSize)
+                .build()
+                .toUriString();
+        return ResponseEntity.ok()
+                .header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"")
+                .body(page);
+    }
+}
@@ -3,6 +3,7 @@ package com.gym.booking.controller;
 import com.gym.booking.dto.UserDTO;
 import com.gym.booking.service.BillingService;
 import com.gym.booking.model.User;
+import com.gym.booking.service.PrincipalResolver;
 import com.gym.booking.service.UserService;
 import jakarta.validation.Valid;
 import org.springframework.http.ResponseEntity;
@@ -16,17 +17,22 @@ import java.util.stream.Collectors;
 public class UserController {
     private final UserService userService;
     private final BillingService billingService;
+    private final PrincipalResolver principalResolver;
+    private final com.gym.booking.service.AuditLogWriter auditLogWriter;
 
-    public UserController(UserService userService, BillingService billingService) {
+    public UserController(UserService userService, BillingService billingService,
+            PrincipalResolver principalResolver, com.gym.booking.service.AuditLogWriter auditLogWriter) {
         this.userService = userService;
         this.billingService = billingService;
+        this.principalResolver = principalResolver;
+        this.auditLogWriter = auditLogWriter;
     }
 
     @GetMapping("/me")
     public ResponseEntity<UserDTO> getMe(org.springframework.security.core.Authentication authentication) {
-        if (authentication instanceof org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken jwtAuth) {
-            java.util.Map<String, Object> claims = new java.util.HashMap<>(jwtAuth.getToken().getClaims());
-            User user = userService.findOrCreateFromJwtClaims(claims);
+        var me = principalResolver.resolve(authentication).orElse(null);
+        if (me != null) {
+            User user = userService.findById(me.userId());
             return ResponseEntity.ok(convertToDTO(user));
         }
         return ResponseEntity.status(401).build();
@@ -35,9 +41,9 @@ public class UserController {
     @PutMapping("/me")
     public ResponseEntity<UserDTO> updateMe(@Valid @RequestBody UserDTO userDTO,
             org.springframework.security.core.Authentication authentication) {
-        if (authentication instanceof org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken jwtAuth) {
-            java.util.Map<String, Object> claims = new java.util.HashMap<>(jwtAuth.getToken().getClaims());
-            User current = userService.findOrCreateFromJwtClaims(claims);
+        var me = principalResolver.resolve(authentication).orElse(null);
+        if (me != null) {
+            User current = userService.findById(me.userId());
             // Only allow updating name for now (email managed by IdP)
             current.setName(userDTO.getName());
             current.setAvatarUrl(userDTO.getAvatarUrl());
@@ -62,7 +68,13 @@ public class UserController {
     @PutMapping("/{id}")
     public ResponseEntity<UserDTO> updateUser(@PathVariable Long id, @Valid @RequestBody UserDTO userDTO) {
         User user = convertToEntity(userDTO);
+        User.UserRole previousRole = userService.findById(id).getRole();
         User updatedUser = userService.updateUser(id, user);
+        principalResolver.evictUser(id);
+        if (updatedUser.getRole() != previousRole) {
+            auditLogWriter.record("ROLE_CHANGED", "USER", id, com.gym.booking.service.AuditMetadata.builder()
+                    .change(previousRole, updatedUser.getRole()));
+        }
         return ResponseEntity.ok(convertToDTO(updatedUser));
     }
 
@@ -70,6 +82,7 @@ public class UserController {
     @DeleteMapping("/{id}")
     public ResponseEntity<?> deleteUser(@PathVariable Long id) {
         userService.deleteUser(id);
+        principalResolver.evictUser(id);
         return ResponseEntity.ok().build();
     }
 
@@ -88,11 +101,7 @@ public class UserController {
     @PreAuthorize("hasAnyRole('ADMIN','TRAINER')")
     @GetMapping("/members")
     public ResponseEntity<List<UserDTO>> getAllMembers() {
-        List<User> members = userService.findAllMembers();
-        List<UserDTO> athleteDTOs = members.stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
-        return ResponseEntity.ok(athleteDTOs);
+        return ResponseEntity.ok(userService.findAllMemberDTOs());
     }
 
     private UserDTO convertToDTO(User user) {
@@ -1,36 +1,42 @@
 package com.gym.booking.controller;
 
-import com.gym.booking.model.WalletTransaction;
-import com.gym.booking.model.User;
-import com.gym.booking.service.UserService;
+import com.gym.booking.dto.WalletTransactionDTO;
+import com.gym.booking.service.PrincipalResolver;
 import com.gym.booking.service.WalletService;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.List;
 
 @RestController
 @RequestMapping("/api/users/me/wallet")
 public class UserWalletController {
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 500;
+
     private final WalletService walletService;
-    private final UserService userService;
+    private final PrincipalResolver principalResolver;
 
-    public UserWalletController(WalletService walletService, UserService userService) {
+    public UserWalletController(WalletService walletService, PrincipalResolver principalResolver) {
         this.walletService = walletService;
-        this.userService = userService;
+        this.principalResolver = principalResolver;
     }
 
+    // Balance plus the newest page of history; older pages via /transactions
     @GetMapping
     public ResponseEntity<UserWalletResponse> getMyWallet(
             org.springframework.security.core.Authentication authentication) {
-        if (authentication instanceof org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken jwtAuth) {
-            java.util.Map<String, Object> claims = new java.util.HashMap<>(jwtAuth.getToken().getClaims());
-            User user = userService.findOrCreateFromJwtClaims(claims);
-            BigDecimal balance = walletService.getBalance(user.getId());
-            List<WalletTransaction> txs = walletService.getTransactions(user.getId());
+        var me = principalResolver.resolve(authentication).orElse(null);
+        if (me != null) {
+            BigDecimal balance = walletService.getBalance(me.userId());
+            List<WalletTransactionDTO> txs = walletService.getTransactionPage(me.userId(), null, null,
+                    DEFAULT_PAGE_SIZE);
             UserWalletResponse resp = new UserWalletResponse();
             resp.balance = balance;
             resp.transactions = txs;
@@ -39,8 +45,27 @@ public class UserWalletController {
         return ResponseEntity.status(401).build();
     }
 
+    // Keyset-paginated history with running balance, newest first; follow the
+    // Link rel="next" header for the next page
+    @GetMapping("/transactions")
+    public ResponseEntity<List<WalletTransactionDTO>> getMyTransactions(
+            org.springframework.security.core.Authentication authentication,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime beforeAt,
+            @RequestParam(required = false) Long beforeId,
+            @RequestParam(defaultValue = "" + DEFAULT_PAGE_SIZE) int limit) {
+        var me = principalResolver.resolve(authentication).orElse(null);
+        if (me == null) {
+            return ResponseEntity.status(401).build();
+        }
+        int pageSize = KeysetPage.pageSize(limit, MAX_PAGE_SIZE);
+        List<WalletTransactionDTO> entries = walletService.getTransactionPage(me.userId(), beforeAt, beforeId,
+                pageSize + 1);
+        return KeysetPage.respond(entries, pageSize, "beforeAt", WalletTransactionDTO::getCreatedAt,
+                "beforeId", WalletTransactionDTO::getId);
+    }
+
     public static class UserWalletResponse {
         public BigDecimal balance;
-        public List<WalletTransaction> transactions;
+        public List<WalletTransactionDTO> transactions;
     }
 }
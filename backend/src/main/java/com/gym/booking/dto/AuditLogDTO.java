@@ -0,0 +1,20 @@
+package com.gym.booking.dto;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AuditLogDTO {
+    private Long id;
+    private Long actorId;
+    private String action;
+    private String targetType;
+    private Long targetId;
+    private Map<String, Object> metadata;
+    private LocalDateTime createdAt;
+}
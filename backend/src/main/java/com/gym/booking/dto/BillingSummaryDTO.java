@@ -1,10 +1,20 @@
 package com.gym.booking.dto;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
 
+/**
+ * Billing totals read from billing_daily_rollups. Either per user over a
+ * range (day is null) or per day (userId is null unless filtered by user).
+ */
 public class BillingSummaryDTO {
     private Long userId;
-    private BigDecimal placeholder; // removed totalOwed: retained field to keep DTO structure minimal
+    private LocalDate day;
+    private long eventCount;
+    private BigDecimal billedAmount;
+    private BigDecimal paymentAmount;
+    private BigDecimal bonusAmount;
+    private BigDecimal unsettledAmount;
 
     public Long getUserId() {
         return userId;
@@ -14,11 +24,51 @@ public class BillingSummaryDTO {
         this.userId = userId;
     }
 
-    public BigDecimal getPlaceholder() {
-        return placeholder;
+    public LocalDate getDay() {
+        return day;
     }
 
-    public void setPlaceholder(BigDecimal placeholder) {
-        this.placeholder = placeholder;
+    public void setDay(LocalDate day) {
+        this.day = day;
+    }
+
+    public long getEventCount() {
+        return eventCount;
+    }
+
+    public void setEventCount(long eventCount) {
+        this.eventCount = eventCount;
+    }
+
+    public BigDecimal getBilledAmount() {
+        return billedAmount;
+    }
+
+    public void setBilledAmount(BigDecimal billedAmount) {
+        this.billedAmount = billedAmount;
+    }
+
+    public BigDecimal getPaymentAmount() {
+        return paymentAmount;
+    }
+
+    public void setPaymentAmount(BigDecimal paymentAmount) {
+        this.paymentAmount = paymentAmount;
+    }
+
+    public BigDecimal getBonusAmount() {
+        return bonusAmount;
+    }
+
+    public void setBonusAmount(BigDecimal bonusAmount) {
+        this.bonusAmount = bonusAmount;
+    }
+
+    public BigDecimal getUnsettledAmount() {
+        return unsettledAmount;
+    }
+
+    public void setUnsettledAmount(BigDecimal unsettledAmount) {
+        this.unsettledAmount = unsettledAmount;
     }
 }
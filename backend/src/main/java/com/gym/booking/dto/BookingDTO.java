@@ -13,6 +13,25 @@ public class BookingDTO {
     private LocalDateTime attendedAt;
     private LocalDateTime bookedAt;
     private LocalDateTime completedAt; // mirror of attendedAt for frontend convenience
+    private Integer waitlistPosition; // 1-based place in queue while WAITLISTED
+
+    public BookingDTO() {
+    }
+
+    // Projection constructor for BookingRepository listing queries
+    public BookingDTO(Long id, Long userId, String userName, Long classInstanceId, BookingStatus status,
+            LocalDateTime cancelledAt, LocalDateTime attendedAt, LocalDateTime bookedAt, Long waitlistRank) {
+        this.id = id;
+        this.userId = userId;
+        this.userName = userName;
+        this.classInstanceId = classInstanceId;
+        this.status = status;
+        this.cancelledAt = cancelledAt;
+        this.attendedAt = attendedAt;
+        this.completedAt = attendedAt;
+        this.bookedAt = bookedAt;
+        this.waitlistPosition = waitlistRank != null ? waitlistRank.intValue() : null;
+    }
 
     // Getters and Setters
     public Long getId() {
@@ -86,4 +105,12 @@ public class BookingDTO {
     public void setCompletedAt(LocalDateTime completedAt) {
         this.completedAt = completedAt;
     }
+
+    public Integer getWaitlistPosition() {
+        return waitlistPosition;
+    }
+
+    public void setWaitlistPosition(Integer waitlistPosition) {
+        this.waitlistPosition = waitlistPosition;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,70 @@
+package com.gym.booking.dto;
+
+import java.time.Instant;
+
+public class BookingTicketDTO {
+    private String ticketId;
+    private Long classInstanceId;
+    private String status; // PENDING, BOOKED, WAITLISTED, REJECTED
+    private Long bookingId;
+    private String message;
+    private Instant createdAt;
+    private Instant completedAt;
+
+    // Getters and Setters
+    public String getTicketId() {
+        return ticketId;
+    }
+
+    public void setTicketId(String ticketId) {
+        this.ticketId = ticketId;
+    }
+
+    public Long getClassInstanceId() {
+        return classInstanceId;
+    }
+
+    public void setClassInstanceId(Long classInstanceId) {
+        this.classInstanceId = classInstanceId;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public Long getBookingId() {
+        return bookingId;
+    }
+
+    public void setBookingId(Long bookingId) {
+        this.bookingId = bookingId;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public Instant getCompletedAt() {
+        return completedAt;
+    }
+
+    public void setCompletedAt(Instant completedAt) {
+        this.completedAt = completedAt;
+    }
+}
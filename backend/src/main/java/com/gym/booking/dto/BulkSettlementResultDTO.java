@@ -0,0 +1,30 @@
+package com.gym.booking.dto;
+
+import java.util.List;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkSettlementResultDTO {
+    public enum Outcome {
+        SETTLED,
+        ALREADY_SETTLED,
+        NOT_FOUND
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class EventOutcome {
+        private Long eventId;
+        private Outcome outcome;
+    }
+
+    private int settled;
+    private int alreadySettled;
+    private int notFound;
+    private List<EventOutcome> events;
+}
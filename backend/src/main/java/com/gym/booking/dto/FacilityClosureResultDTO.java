@@ -0,0 +1,19 @@
+package com.gym.booking.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FacilityClosureResultDTO {
+    private LocalDateTime from;
+    private LocalDateTime to;
+    private List<Long> cancelledClassIds;
+    private int cancelledBookings;
+    // Members holding a seat or waitlist spot in a cancelled class, to notify
+    private List<Long> affectedMemberIds;
+}
@@ -1,5 +1,6 @@
 package com.gym.booking.dto;
 
+import com.gym.booking.model.GymClass;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Positive;
@@ -40,7 +41,40 @@ public class GymClassDTO {
     // Class kind: GROUP, SMALL_GROUP, PERSONAL, OPEN_GYM
     private String kind;
 
+    // FIRST_COME (default) or LOTTERY; lotteryClosesAt is required for LOTTERY
+    private String allocationMode;
+    private LocalDateTime lotteryClosesAt;
+
+    // Read-only: live seat usage from class_instances.booked_count
+    private Integer bookedCount;
+    private Integer remainingSeats;
+
     private LocalDateTime startTime;
     private LocalDateTime endTime;
     private String location;
+
+    // Projection constructor for GymClassRepository listing queries; applies
+    // the same defaults as the entity-based mapping in GymClassController
+    public GymClassDTO(Long id, String name, String description, Integer capacity, Integer durationMinutes,
+            Long trainerId, Long classTypeId, GymClass.ClassStatus status, GymClass.ClassKind kind,
+            GymClass.AllocationMode allocationMode, LocalDateTime lotteryClosesAt, Integer bookedCount,
+            LocalDateTime startTime, LocalDateTime endTime, String location) {
+        this.id = id;
+        this.name = name;
+        this.description = description;
+        this.capacity = capacity;
+        this.durationMinutes = durationMinutes;
+        this.trainerId = trainerId;
+        this.classTypeId = classTypeId;
+        this.status = status != null ? status.name() : GymClass.ClassStatus.SCHEDULED.name();
+        this.kind = kind != null ? kind.name() : GymClass.ClassKind.GROUP.name();
+        this.allocationMode = allocationMode != null ? allocationMode.name()
+                : GymClass.AllocationMode.FIRST_COME.name();
+        this.lotteryClosesAt = lotteryClosesAt;
+        this.bookedCount = bookedCount != null ? bookedCount : 0;
+        this.remainingSeats = capacity != null ? Math.max(capacity - this.bookedCount, 0) : null;
+        this.startTime = startTime;
+        this.endTime = endTime;
+        this.location = location;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,19 @@
+package com.gym.booking.dto;
+
+import java.time.LocalDateTime;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LotteryEntryDTO {
+    private Long id;
+    private Long userId;
+    private Long classInstanceId;
+    private LocalDateTime lotteryClosesAt;
+    // Entries registered so far, including this one
+    private Long entries;
+    private LocalDateTime enteredAt;
+}
@@ -0,0 +1,21 @@
+package com.gym.booking.dto;
+
+import java.math.BigDecimal;
+import java.util.List;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RosterCompletionResultDTO {
+    private Long classInstanceId;
+    private int completed;
+    private int noShows;
+    // Requested bookings that were not BOOKED in this class (e.g. already closed)
+    private List<Long> skippedBookingIds;
+    private int chargesCreated;
+    private int chargesSettled;
+    private BigDecimal walletCharged;
+}
@@ -0,0 +1,20 @@
+package com.gym.booking.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class WalletTransactionDTO {
+    private Long id;
+    private BigDecimal amount;
+    private String type;
+    private String reference;
+    private LocalDateTime createdAt;
+    // Wallet balance right after this entry; only set in history pages
+    private BigDecimal balanceAfter;
+}
@@ -0,0 +1,7 @@
+package com.gym.booking.exception;
+
+public class ClassFullException extends BookingException {
+    public ClassFullException() {
+        super("Class is fully booked");
+    }
+}
@@ -1,6 +1,8 @@
 package com.gym.booking.model;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
 
 @Entity
 @Table(name = "audit_logs")
@@ -23,8 +25,9 @@ public class AuditLog {
     @Column
     private Long targetId;
 
-    @Column(columnDefinition = "TEXT")
-    private String metadata; // JSON string for now
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(columnDefinition = "jsonb")
+    private java.util.Map<String, Object> metadata;
 
     @Column(nullable = false, updatable = false)
     private java.time.LocalDateTime createdAt;
@@ -75,11 +78,11 @@ public class AuditLog {
         this.targetId = targetId;
     }
 
-    public String getMetadata() {
+    public java.util.Map<String, Object> getMetadata() {
         return metadata;
     }
 
-    public void setMetadata(String metadata) {
+    public void setMetadata(java.util.Map<String, Object> metadata) {
         this.metadata = metadata;
     }
 
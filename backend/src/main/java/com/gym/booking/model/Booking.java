@@ -25,12 +25,17 @@ public class Booking extends BaseEntity {
     @Column(name = "attended_at")
     private LocalDateTime attendedAt;
 
+    // FIFO ordering key while WAITLISTED; cleared on promotion
+    @Column(name = "waitlist_position")
+    private Long waitlistPosition;
+
     public enum BookingStatus {
         BOOKED,
         COMPLETED,
         CANCELLED_BY_USER,
         CANCELLED_BY_GYM,
-        NO_SHOW
+        NO_SHOW,
+        WAITLISTED
     }
 
     // Getters and Setters
@@ -73,4 +78,12 @@ public class Booking extends BaseEntity {
     public void setAttendedAt(LocalDateTime attendedAt) {
         this.attendedAt = attendedAt;
     }
+
+    public Long getWaitlistPosition() {
+        return waitlistPosition;
+    }
+
+    public void setWaitlistPosition(Long waitlistPosition) {
+        this.waitlistPosition = waitlistPosition;
+    }
 }
\ No newline at end of file
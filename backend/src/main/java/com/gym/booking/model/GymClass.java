@@ -52,12 +52,33 @@ public class GymClass extends BaseEntity {
     @Column(name = "kind", nullable = false, length = 32)
     private ClassKind kind = ClassKind.GROUP;
 
+    @Enumerated(EnumType.STRING)
+    @Column(name = "allocation_mode", nullable = false, length = 20)
+    private AllocationMode allocationMode = AllocationMode.FIRST_COME;
+
+    // LOTTERY only: requests are collected until this time, then drawn in one batch
+    @Column(name = "lottery_closes_at")
+    private LocalDateTime lotteryClosesAt;
+
+    // Set by the draw (LotteryJdbcRepository) only
+    @Column(name = "lottery_drawn_at", insertable = false, updatable = false)
+    private LocalDateTime lotteryDrawnAt;
+
+    // Maintained by conditional UPDATEs in GymClassRepository; never written through the entity
+    @Column(name = "booked_count", nullable = false, insertable = false, updatable = false)
+    private Integer bookedCount = 0;
+
     public enum ClassStatus {
         SCHEDULED,
         CANCELLED,
         COMPLETED
     }
 
+    public enum AllocationMode {
+        FIRST_COME,
+        LOTTERY
+    }
+
     public enum ClassKind {
         GROUP,
         SMALL_GROUP,
@@ -71,6 +92,12 @@ public class GymClass extends BaseEntity {
         return classType != null ? classType.getName() : null;
     }
 
+    // True while lottery entries are being collected (no seats handed out yet)
+    @Transient
+    public boolean isLotteryOpen() {
+        return allocationMode == AllocationMode.LOTTERY && lotteryDrawnAt == null;
+    }
+
     public Boolean getIsCancelled() {
         return isCancelled;
     }
@@ -49,7 +49,9 @@ public class User extends BaseEntity {
     @Column(precision = 10, scale = 2)
     private BigDecimal openGymBaseCost;
 
-    @Column(name = "wallet_balance", precision = 10, scale = 2)
+    // Projection of the wallet ledger, maintained by a database trigger on
+    // wallet_transactions inserts; never written from here
+    @Column(name = "wallet_balance", precision = 10, scale = 2, insertable = false, updatable = false)
     private BigDecimal walletBalance = java.math.BigDecimal.ZERO;
 
     @Column
@@ -22,7 +22,7 @@ public class WalletTransaction extends BaseEntity {
     private BigDecimal amount;
 
     @Column(length = 50, nullable = false)
-    private String type; // TOPUP, SET, CHARGE, REFUND
+    private String type; // TOPUP, SET, CHARGE, CHARGE_PARTIAL, SETTLEMENT, OPENING, REFUND
 
     @Column(length = 255)
     private String reference;
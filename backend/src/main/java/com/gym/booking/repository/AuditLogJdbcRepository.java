@@ -0,0 +1,40 @@
+package com.gym.booking.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Batched inserts into audit_logs for the background AuditLogWriter. Metadata
+ * arrives as serialized JSON and is cast to jsonb by Postgres.
+ */
+@Repository
+public class AuditLogJdbcRepository {
+
+    public record Row(Long actorId, String action, String targetType, Long targetId, String metadata,
+            LocalDateTime createdAt) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public AuditLogJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public void insertBatch(List<Row> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        List<Object[]> params = new ArrayList<>(rows.size());
+        for (Row row : rows) {
+            params.add(new Object[] { row.actorId(), row.action(), row.targetType(), row.targetId(), row.metadata(),
+                    Timestamp.valueOf(row.createdAt()) });
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO audit_logs (actor_id, action, target_type, target_id, metadata, "
+                + "created_at) VALUES (?, ?, ?, ?, CAST(? AS JSONB), ?)", params);
+    }
+}
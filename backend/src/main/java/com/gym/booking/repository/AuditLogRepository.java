@@ -1,10 +1,13 @@
 package com.gym.booking.repository;
 
+import com.gym.booking.dto.AuditLogDTO;
 import com.gym.booking.model.AuditLog;
 import com.gym.booking.model.User;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -16,5 +19,44 @@ public interface AuditLogRepository extends JpaRepository<AuditLog, Long> {
 
     Page<AuditLog> findByTargetTypeAndTargetId(String targetType, Long targetId, Pageable pageable);
 
-    List<AuditLog> findByCreatedAtBetween(LocalDateTime startDate, LocalDateTime endDate);
+    // Keyset page, newest first, strictly before the (createdAt, id) cursor.
+    // The createdAt bounds let Postgres prune audit_logs to the months in
+    // [from, beforeAt]; optional filters are skipped when null
+    @Query("select new com.gym.booking.dto.AuditLogDTO(a.id, a.actor.id, a.action, a.targetType, a.targetId, "
+            + "a.metadata, a.createdAt) from AuditLog a "
+            + "where a.createdAt >= :from and a.createdAt <= :beforeAt "
+            + "and (a.createdAt < :beforeAt or a.id < :beforeId) "
+            + "and (:actorId is null or a.actor.id = :actorId) "
+            + "and (:action is null or a.action = :action) "
+            + "and (:actionPrefix is null or a.action like :actionPrefix) "
+            + "and (:targetType is null or a.targetType = :targetType) "
+            + "and (:targetId is null or a.targetId = :targetId) "
+            + "order by a.createdAt desc, a.id desc")
+    List<AuditLogDTO> findPage(@Param("from") LocalDateTime from, @Param("beforeAt") LocalDateTime beforeAt,
+            @Param("beforeId") Long beforeId, @Param("actorId") Long actorId, @Param("action") String action,
+            @Param("actionPrefix") String actionPrefix, @Param("targetType") String targetType,
+            @Param("targetId") Long targetId, Pageable pageable);
+
+    // Same page as findPage, narrowed by jsonb containment on metadata (served
+    // by the GIN index), e.g. metadataJson = {"bookingId": 123}. minAmount, when
+    // set, keeps entries whose numeric metadata.amount has at least that
+    // magnitude, so charges (negative) and top-ups match alike
+    String METADATA_FILTER = "FROM audit_logs WHERE created_at >= :from AND created_at <= :beforeAt "
+            + "AND metadata @> CAST(:metadataJson AS JSONB) "
+            + "AND (CAST(:minAmount AS NUMERIC) IS NULL OR ABS(CASE WHEN jsonb_typeof(metadata -> 'amount') = 'number' "
+            + "THEN CAST(metadata ->> 'amount' AS NUMERIC) END) >= CAST(:minAmount AS NUMERIC)) "
+            + "AND (CAST(:actorId AS BIGINT) IS NULL OR actor_id = :actorId) "
+            + "AND (CAST(:action AS TEXT) IS NULL OR action = :action) "
+            + "AND (CAST(:actionPrefix AS TEXT) IS NULL OR action LIKE :actionPrefix) "
+            + "AND (CAST(:targetType AS TEXT) IS NULL OR target_type = :targetType) "
+            + "AND (CAST(:targetId AS BIGINT) IS NULL OR target_id = :targetId) ";
+
+    @Query(value = "SELECT * " + METADATA_FILTER + "AND (created_at < :beforeAt OR id < :beforeId) "
+            + "ORDER BY created_at DESC, id DESC", nativeQuery = true)
+    List<AuditLog> findPageByMetadata(@Param("metadataJson") String metadataJson,
+            @Param("minAmount") java.math.BigDecimal minAmount, @Param("from") LocalDateTime from,
+            @Param("beforeAt") LocalDateTime beforeAt, @Param("beforeId") Long beforeId,
+            @Param("actorId") Long actorId, @Param("action") String action,
+            @Param("actionPrefix") String actionPrefix, @Param("targetType") String targetType,
+            @Param("targetId") Long targetId, Pageable pageable);
 }
@@ -0,0 +1,42 @@
+package com.gym.booking.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Batched inserts into billing_events for bulk operations (e.g. closing a
+ * class roster). Callers keep billing_daily_rollups in step themselves.
+ */
+@Repository
+public class BillingEventJdbcRepository {
+
+    public record NewEvent(Long userId, Long bookingId, BigDecimal amount, String reason, LocalDateTime eventDate,
+            boolean settled, String settlementType) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public BillingEventJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public void insertBatch(List<NewEvent> events, LocalDateTime now) {
+        if (events.isEmpty()) {
+            return;
+        }
+        List<Object[]> params = new ArrayList<>(events.size());
+        for (NewEvent event : events) {
+            params.add(new Object[] { event.userId(), event.bookingId(), event.amount(), event.reason(),
+                    Timestamp.valueOf(event.eventDate()), event.settled(), event.settlementType(),
+                    Timestamp.valueOf(now) });
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO billing_events (user_id, booking_id, amount, reason, event_date, "
+                + "settled, settlement_type, created_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?)", params);
+    }
+}
@@ -20,6 +20,15 @@ public interface BillingEventRepository extends JpaRepository<BillingEvent, Long
             @Param("startDate") LocalDateTime startDate,
             @Param("endDate") LocalDateTime endDate);
 
+    // Admin billing report: every event in the range with the booking, class,
+    // class type and trainer the report shows, in one select
+    @Query("SELECT e FROM BillingEvent e LEFT JOIN FETCH e.booking b LEFT JOIN FETCH b.classInstance c "
+            + "LEFT JOIN FETCH c.classType LEFT JOIN FETCH c.trainer "
+            + "WHERE e.eventDate BETWEEN :startDate AND :endDate ORDER BY e.user.id, e.eventDate, e.id")
+    List<BillingEvent> findReportEventsByDateRange(
+            @Param("startDate") LocalDateTime startDate,
+            @Param("endDate") LocalDateTime endDate);
+
     @Query("SELECT b FROM BillingEvent b WHERE b.eventDate BETWEEN :startDate AND :endDate")
     List<BillingEvent> findByDateRange(
             @Param("startDate") LocalDateTime startDate,
@@ -0,0 +1,58 @@
+package com.gym.booking.repository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.function.Consumer;
+
+/**
+ * Row-at-a-time read of billing events for exports. Rows are handed to the
+ * caller as they arrive from a server-side cursor (PostgreSQL only uses one
+ * when a fetch size is set and the connection is not in auto-commit, so call
+ * this inside a transaction); nothing is collected in memory.
+ */
+@Repository
+public class BillingExportJdbcRepository {
+
+    public record ExportRow(Long id, Long userId, String userName, String userEmail, Long bookingId,
+            String className, String classKind, String trainerName, BigDecimal amount, String reason,
+            LocalDateTime eventDate, boolean settled, String settlementType) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public BillingExportJdbcRepository(DataSource dataSource,
+            @Value("${app.billing.export.fetch-size:1000}") int fetchSize) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(fetchSize);
+    }
+
+    public void forEachEvent(LocalDateTime startDate, LocalDateTime endDate, Consumer<ExportRow> consumer) {
+        jdbcTemplate.query(
+                "SELECT e.id, e.user_id, u.name AS user_name, u.email AS user_email, e.booking_id, "
+                        + "ct.name AS class_name, c.kind AS class_kind, t.name AS trainer_name, e.amount, e.reason, "
+                        + "e.event_date, e.settled, e.settlement_type FROM billing_events e "
+                        + "JOIN users u ON u.id = e.user_id "
+                        + "LEFT JOIN bookings b ON b.id = e.booking_id "
+                        + "LEFT JOIN class_instances c ON c.id = b.class_instance_id "
+                        + "LEFT JOIN class_types ct ON ct.id = c.class_type_id "
+                        + "LEFT JOIN users t ON t.id = c.trainer_id "
+                        + "WHERE e.event_date BETWEEN ? AND ? ORDER BY e.event_date, e.id",
+                rs -> {
+                    long bookingId = rs.getLong("booking_id");
+                    Long booking = rs.wasNull() ? null : bookingId;
+                    Timestamp eventDate = rs.getTimestamp("event_date");
+                    consumer.accept(new ExportRow(rs.getLong("id"), rs.getLong("user_id"), rs.getString("user_name"),
+                            rs.getString("user_email"), booking, rs.getString("class_name"),
+                            rs.getString("class_kind"), rs.getString("trainer_name"), rs.getBigDecimal("amount"),
+                            rs.getString("reason"), eventDate != null ? eventDate.toLocalDateTime() : null,
+                            rs.getBoolean("settled"), rs.getString("settlement_type")));
+                },
+                Timestamp.valueOf(startDate), Timestamp.valueOf(endDate));
+    }
+}
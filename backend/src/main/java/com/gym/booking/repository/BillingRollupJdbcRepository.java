@@ -0,0 +1,126 @@
+package com.gym.booking.repository;
+
+import com.gym.booking.dto.BillingSummaryDTO;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Maintenance and reads of billing_daily_rollups. Deltas are applied with an
+ * upsert, so concurrent writers for the same user and day add up instead of
+ * overwriting each other.
+ */
+@Repository
+public class BillingRollupJdbcRepository {
+
+    private static final String BUCKET_SQL = "INSERT INTO billing_daily_rollups AS r (user_id, day, event_count, "
+            + "billed_amount, payment_amount, bonus_amount, unsettled_amount, updated_at) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, CURRENT_TIMESTAMP) "
+            + "ON CONFLICT (user_id, day) DO UPDATE SET "
+            + "event_count = r.event_count + EXCLUDED.event_count, "
+            + "billed_amount = r.billed_amount + EXCLUDED.billed_amount, "
+            + "payment_amount = r.payment_amount + EXCLUDED.payment_amount, "
+            + "bonus_amount = r.bonus_amount + EXCLUDED.bonus_amount, "
+            + "unsettled_amount = r.unsettled_amount + EXCLUDED.unsettled_amount, "
+            + "updated_at = CURRENT_TIMESTAMP";
+
+    private static final String SUM_COLUMNS = "SUM(event_count) AS event_count, SUM(billed_amount) AS billed, "
+            + "SUM(payment_amount) AS payment, SUM(bonus_amount) AS bonus, SUM(unsettled_amount) AS unsettled ";
+
+    /**
+     * Change to one user's totals for one day. Amounts may be negative (e.g.
+     * settling moves an amount from unsettled to payment or bonus).
+     */
+    public record Delta(Long userId, LocalDate day, int eventCount, BigDecimal billed, BigDecimal payment,
+            BigDecimal bonus, BigDecimal unsettled) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public BillingRollupJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public void apply(Delta delta) {
+        jdbcTemplate.update(BUCKET_SQL, params(delta));
+    }
+
+    public void applyAll(List<Delta> deltas) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        List<Object[]> rows = new ArrayList<>(deltas.size());
+        for (Delta delta : deltas) {
+            rows.add(params(delta));
+        }
+        jdbcTemplate.batchUpdate(BUCKET_SQL, rows);
+    }
+
+    /**
+     * Recompute every rollup row from billing_events. The table lock makes
+     * in-flight deltas finish first and holds new ones back until the rebuild
+     * commits, so none are lost or counted twice. Returns the number of rows.
+     */
+    public int rebuild() {
+        jdbcTemplate.execute("LOCK TABLE billing_daily_rollups IN EXCLUSIVE MODE");
+        jdbcTemplate.update("DELETE FROM billing_daily_rollups");
+        return jdbcTemplate.update(
+                "INSERT INTO billing_daily_rollups (user_id, day, event_count, billed_amount, payment_amount, "
+                        + "bonus_amount, unsettled_amount) "
+                        + "SELECT user_id, CAST(event_date AS DATE), COUNT(*), SUM(amount), "
+                        + "COALESCE(SUM(amount) FILTER (WHERE settled "
+                        + "AND settlement_type IS DISTINCT FROM 'BONUS'), 0), "
+                        + "COALESCE(SUM(amount) FILTER (WHERE settled AND settlement_type = 'BONUS'), 0), "
+                        + "COALESCE(SUM(amount) FILTER (WHERE NOT settled), 0) "
+                        + "FROM billing_events GROUP BY user_id, CAST(event_date AS DATE)");
+    }
+
+    /**
+     * Totals per user over [from, to], optionally for one user only.
+     */
+    public List<BillingSummaryDTO> sumByUser(LocalDate from, LocalDate to, Long userId) {
+        return jdbcTemplate.query("SELECT user_id, " + SUM_COLUMNS + "FROM billing_daily_rollups "
+                + "WHERE day BETWEEN ? AND ? AND (CAST(? AS BIGINT) IS NULL OR user_id = ?) "
+                + "GROUP BY user_id ORDER BY user_id",
+                summaryMapper(true, false), Date.valueOf(from), Date.valueOf(to), userId, userId);
+    }
+
+    /**
+     * Totals per day over [from, to] across all users, or for one user.
+     */
+    public List<BillingSummaryDTO> sumByDay(LocalDate from, LocalDate to, Long userId) {
+        return jdbcTemplate.query("SELECT day, " + SUM_COLUMNS + "FROM billing_daily_rollups "
+                + "WHERE day BETWEEN ? AND ? AND (CAST(? AS BIGINT) IS NULL OR user_id = ?) "
+                + "GROUP BY day ORDER BY day",
+                summaryMapper(false, true), Date.valueOf(from), Date.valueOf(to), userId, userId);
+    }
+
+    private static Object[] params(Delta delta) {
+        return new Object[] { delta.userId(), Date.valueOf(delta.day()), delta.eventCount(), delta.billed(),
+                delta.payment(), delta.bonus(), delta.unsettled() };
+    }
+
+    private static RowMapper<BillingSummaryDTO> summaryMapper(boolean withUser, boolean withDay) {
+        return (rs, rowNum) -> {
+            BillingSummaryDTO dto = new BillingSummaryDTO();
+            if (withUser) {
+                dto.setUserId(rs.getLong("user_id"));
+            }
+            if (withDay) {
+                dto.setDay(rs.getDate("day").toLocalDate());
+            }
+            dto.setEventCount(rs.getLong("event_count"));
+            dto.setBilledAmount(rs.getBigDecimal("billed"));
+            dto.setPaymentAmount(rs.getBigDecimal("payment"));
+            dto.setBonusAmount(rs.getBigDecimal("bonus"));
+            dto.setUnsettledAmount(rs.getBigDecimal("unsettled"));
+            return dto;
+        };
+    }
+}
@@ -0,0 +1,139 @@
+package com.gym.booking.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Set-based settlement of billing events: one statement settles any number
+ * of events and reports what happened to each. Events that are still
+ * unsettled become PAYMENT unless they already carry a settlement type.
+ */
+@Repository
+public class BillingSettlementJdbcRepository {
+
+    private static final String SETTLE_SET = "SET settled = TRUE, updated_at = ?, settlement_type = CASE "
+            + "WHEN e.settlement_type IS NULL OR e.settlement_type = 'NONE' THEN 'PAYMENT' "
+            + "ELSE e.settlement_type END ";
+
+    private static final String RETURNING = "RETURNING e.id, e.user_id, e.event_date, e.amount, e.settlement_type";
+
+    /**
+     * Outcome for one requested id. userId, eventDate, amount and
+     * settlementType are only set when the event was settled by this call.
+     */
+    public record Outcome(Long eventId, String status, Long userId, LocalDateTime eventDate, BigDecimal amount,
+            String settlementType) {
+        public static final String SETTLED = "SETTLED";
+        public static final String ALREADY_SETTLED = "ALREADY_SETTLED";
+        public static final String NOT_FOUND = "NOT_FOUND";
+    }
+
+    /**
+     * A settlement paid from the wallet: what was still due after earlier
+     * partial wallet charges, and the ledger entry that paid it (null when
+     * nothing was due).
+     */
+    public record WalletOutcome(Outcome outcome, BigDecimal paid, Long transactionId) {
+    }
+
+    private static final RowMapper<Outcome> OUTCOME_MAPPER = (rs, rowNum) -> {
+        long userId = rs.getLong("user_id");
+        Long user = rs.wasNull() ? null : userId;
+        Timestamp eventDate = rs.getTimestamp("event_date");
+        return new Outcome(rs.getLong("id"), rs.getString("status"), user,
+                eventDate != null ? eventDate.toLocalDateTime() : null, rs.getBigDecimal("amount"),
+                rs.getString("settlement_type"));
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public BillingSettlementJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Settle the given events in one round trip. Every distinct requested id
+     * gets exactly one outcome.
+     */
+    public List<Outcome> settleByIds(Collection<Long> eventIds, LocalDateTime now) {
+        // The outer select reads the pre-update snapshot, so an id missing from
+        // upd but present in billing_events was already settled
+        String sql = "WITH req AS (SELECT DISTINCT unnest(?) AS id), "
+                + "upd AS (UPDATE billing_events e " + SETTLE_SET
+                + "FROM req WHERE e.id = req.id AND e.settled = FALSE " + RETURNING + ") "
+                + "SELECT req.id, CASE WHEN upd.id IS NOT NULL THEN 'SETTLED' "
+                + "WHEN b.id IS NOT NULL THEN 'ALREADY_SETTLED' ELSE 'NOT_FOUND' END AS status, "
+                + "upd.user_id, upd.event_date, upd.amount, upd.settlement_type "
+                + "FROM req LEFT JOIN upd ON upd.id = req.id LEFT JOIN billing_events b ON b.id = req.id "
+                + "ORDER BY req.id";
+        return jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(sql);
+            ps.setArray(1, con.createArrayOf("bigint", eventIds.toArray()));
+            ps.setTimestamp(2, Timestamp.valueOf(now));
+            return ps;
+        }, OUTCOME_MAPPER);
+    }
+
+    /**
+     * Settle every unsettled event of a user dated before {@code before}.
+     */
+    public List<Outcome> settleUnsettledForUser(Long userId, LocalDateTime before, LocalDateTime now) {
+        return jdbcTemplate.query("UPDATE billing_events e " + SETTLE_SET
+                + "WHERE e.user_id = ? AND e.settled = FALSE AND e.event_date < ? "
+                + RETURNING + ", 'SETTLED' AS status",
+                OUTCOME_MAPPER, Timestamp.valueOf(now), userId, Timestamp.valueOf(before));
+    }
+
+    /**
+     * Pay a member's unsettled events from their wallet, oldest first, for as
+     * long as the balance covers the next one. Amounts already taken by
+     * partial wallet charges for the same booking are not charged again. The
+     * events are settled as PAYMENT and one ledger entry per event debits the
+     * wallet, all in one statement under the member row lock.
+     */
+    public List<WalletOutcome> settleFromWallet(Long userId, LocalDateTime now) {
+        return jdbcTemplate.query("WITH locked AS (SELECT id, wallet_balance FROM users WHERE id = ? FOR UPDATE), "
+                + "due AS (SELECT e.id, e.event_date, GREATEST(e.amount - COALESCE(p.paid, 0), 0) AS due "
+                + "FROM billing_events e JOIN locked l ON l.id = e.user_id "
+                + "LEFT JOIN LATERAL (SELECT -SUM(t.amount) AS paid FROM wallet_transactions t "
+                + "WHERE t.user_id = e.user_id AND t.type = 'CHARGE_PARTIAL' "
+                + "AND t.reference = 'booking:' || e.booking_id) p ON TRUE "
+                + "WHERE e.settled = FALSE), "
+                + "payable AS (SELECT d.id, d.due FROM (SELECT id, due, "
+                + "SUM(due) OVER (ORDER BY event_date, id) AS running FROM due) d "
+                + "JOIN locked l ON d.running <= l.wallet_balance), "
+                + "upd AS (UPDATE billing_events e SET settled = TRUE, updated_at = ?, settlement_type = 'PAYMENT' "
+                + "FROM payable p WHERE e.id = p.id AND e.settled = FALSE "
+                + "RETURNING e.id, e.user_id, e.event_date, e.amount, e.settlement_type, p.due), "
+                + "ledger AS (INSERT INTO wallet_transactions (user_id, amount, type, reference, created_at) "
+                + "SELECT user_id, -due, 'SETTLEMENT', 'billing:' || id, ? FROM upd WHERE due > 0 "
+                + "RETURNING id, reference) "
+                + "SELECT upd.id, 'SETTLED' AS status, upd.user_id, upd.event_date, upd.amount, upd.settlement_type, "
+                + "upd.due, l.id AS transaction_id FROM upd LEFT JOIN ledger l ON l.reference = 'billing:' || upd.id "
+                + "ORDER BY upd.event_date, upd.id",
+                (rs, rowNum) -> {
+                    Outcome outcome = OUTCOME_MAPPER.mapRow(rs, rowNum);
+                    long transactionId = rs.getLong("transaction_id");
+                    Long tx = rs.wasNull() ? null : transactionId;
+                    return new WalletOutcome(outcome, rs.getBigDecimal("due"), tx);
+                },
+                userId, Timestamp.valueOf(now), Timestamp.valueOf(now));
+    }
+
+    /**
+     * Members with money in the wallet and at least one unsettled event.
+     */
+    public List<Long> findUserIdsToSweep() {
+        return jdbcTemplate.queryForList("SELECT u.id FROM users u WHERE u.wallet_balance > 0 "
+                + "AND EXISTS (SELECT 1 FROM billing_events e WHERE e.user_id = u.id AND e.settled = FALSE) "
+                + "ORDER BY u.id", Long.class);
+    }
+}
@@ -0,0 +1,85 @@
+package com.gym.booking.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Set-based status changes on bookings, one statement for any number of
+ * rows, reporting the rows that actually changed.
+ */
+@Repository
+public class BookingJdbcRepository {
+
+    public record ChangedBooking(Long bookingId, Long userId, String status) {
+    }
+
+    public record CancelledBooking(Long bookingId, Long userId, Long classInstanceId, String previousStatus) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public BookingJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Close a class roster: the attended bookings become COMPLETED (attended
+     * at {@code now}), the no-shows NO_SHOW. Only BOOKED rows of the class
+     * change, so repeating the call changes nothing.
+     */
+    public List<ChangedBooking> completeRoster(Long classInstanceId, Collection<Long> attended,
+            Collection<Long> noShows, LocalDateTime now) {
+        String sql = "WITH req AS (SELECT CAST(? AS BIGINT[]) AS attended, CAST(? AS BIGINT[]) AS no_show) "
+                + "UPDATE bookings b SET "
+                + "status = CASE WHEN b.id = ANY(req.attended) THEN 'COMPLETED' ELSE 'NO_SHOW' END, "
+                + "attended_at = CASE WHEN b.id = ANY(req.attended) THEN ? ELSE b.attended_at END, "
+                + "updated_at = ? FROM req "
+                + "WHERE b.class_instance_id = ? AND b.status = 'BOOKED' "
+                + "AND (b.id = ANY(req.attended) OR b.id = ANY(req.no_show)) "
+                + "RETURNING b.id, b.user_id, b.status";
+        return jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(sql);
+            ps.setArray(1, con.createArrayOf("bigint", attended.toArray()));
+            ps.setArray(2, con.createArrayOf("bigint", noShows.toArray()));
+            ps.setTimestamp(3, Timestamp.valueOf(now));
+            ps.setTimestamp(4, Timestamp.valueOf(now));
+            ps.setLong(5, classInstanceId);
+            return ps;
+        }, (rs, rowNum) -> new ChangedBooking(rs.getLong("id"), rs.getLong("user_id"), rs.getString("status")));
+    }
+
+    /**
+     * Gym-initiated cancellation of every BOOKED or WAITLISTED booking of the
+     * given classes, giving back the seats the BOOKED ones held in the same
+     * statement. Members are never charged for these, so no billing follows.
+     */
+    public List<CancelledBooking> cancelByGym(Collection<Long> classInstanceIds, LocalDateTime now) {
+        if (classInstanceIds.isEmpty()) {
+            return List.of();
+        }
+        String sql = "WITH cancelled AS (UPDATE bookings b SET status = 'CANCELLED_BY_GYM', cancelled_at = ?, "
+                + "waitlist_position = NULL, updated_at = ? FROM bookings old "
+                + "WHERE old.id = b.id AND b.class_instance_id = ANY(CAST(? AS BIGINT[])) "
+                + "AND b.status IN ('BOOKED', 'WAITLISTED') "
+                + "RETURNING b.id, b.user_id, b.class_instance_id, old.status AS previous_status), "
+                + "released AS (UPDATE class_instances c SET booked_count = GREATEST(c.booked_count - r.seats, 0) "
+                + "FROM (SELECT class_instance_id, COUNT(*) AS seats FROM cancelled "
+                + "WHERE previous_status = 'BOOKED' GROUP BY class_instance_id) r "
+                + "WHERE c.id = r.class_instance_id RETURNING c.id) "
+                + "SELECT id, user_id, class_instance_id, previous_status FROM cancelled";
+        return jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(sql);
+            ps.setTimestamp(1, Timestamp.valueOf(now));
+            ps.setTimestamp(2, Timestamp.valueOf(now));
+            ps.setArray(3, con.createArrayOf("bigint", classInstanceIds.toArray()));
+            return ps;
+        }, (rs, rowNum) -> new CancelledBooking(rs.getLong("id"), rs.getLong("user_id"),
+                rs.getLong("class_instance_id"), rs.getString("previous_status")));
+    }
+}
@@ -1,18 +1,61 @@
 package com.gym.booking.repository;
 
+import com.gym.booking.dto.BookingDTO;
 import com.gym.booking.model.Booking;
 import com.gym.booking.model.GymClass;
 import com.gym.booking.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 public interface BookingRepository extends JpaRepository<Booking, Long> {
     List<Booking> findByUser(User user);
 
     List<Booking> findByClassInstance(GymClass classInstance);
 
+    // Read-only listings select straight into BookingDTO. The waitlist rank
+    // (1-based place among WAITLISTED rows of the class) is a correlated count
+    // served by idx_bookings_waitlist_head
+    String DTO_SELECT = "select new com.gym.booking.dto.BookingDTO(b.id, u.id, u.name, b.classInstance.id, "
+            + "b.status, b.cancelledAt, b.attendedAt, b.createdAt, "
+            + "case when b.status = :waitlisted and b.waitlistPosition is not null then "
+            + "(select count(w) from Booking w where w.classInstance.id = b.classInstance.id "
+            + "and w.status = :waitlisted and w.waitlistPosition < b.waitlistPosition) + 1 end) "
+            + "from Booking b join b.user u ";
+
+    @Query(DTO_SELECT + "where u.id = :userId")
+    List<BookingDTO> findDTOsByUserId(@Param("userId") Long userId,
+            @Param("waitlisted") Booking.BookingStatus waitlisted);
+
+    @Query(DTO_SELECT + "where b.classInstance.id = :classInstanceId")
+    List<BookingDTO> findDTOsByClassInstanceId(@Param("classInstanceId") Long classInstanceId,
+            @Param("waitlisted") Booking.BookingStatus waitlisted);
+
     long countByClassInstanceAndStatus(GymClass classInstance, Booking.BookingStatus status);
 
+    long countByClassInstanceAndStatusIn(GymClass classInstance, java.util.Collection<Booking.BookingStatus> statuses);
+
     List<Booking> findByClassInstanceAndUserAndStatus(GymClass classInstance, User user, Booking.BookingStatus status);
-}
\ No newline at end of file
+
+    boolean existsByClassInstanceAndUserAndStatusIn(GymClass classInstance, User user,
+            Collection<Booking.BookingStatus> statuses);
+
+    @Query(value = "SELECT nextval('booking_waitlist_seq')", nativeQuery = true)
+    long nextWaitlistPosition();
+
+    // Head of the waitlist for a class behind :afterPosition (0 for the whole
+    // queue), locked for promotion. Served by the partial index
+    // idx_bookings_waitlist_head; concurrent promoters skip rows already being
+    // promoted
+    @Query(value = "SELECT * FROM bookings WHERE class_instance_id = :classInstanceId AND status = 'WAITLISTED' "
+            + "AND waitlist_position > :afterPosition "
+            + "ORDER BY waitlist_position LIMIT 1 FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    Optional<Booking> lockWaitlistHead(@Param("classInstanceId") Long classInstanceId,
+            @Param("afterPosition") long afterPosition);
+
+    long countByClassInstance_IdAndStatusAndWaitlistPositionLessThan(Long classInstanceId,
+            Booking.BookingStatus status, Long waitlistPosition);
+}
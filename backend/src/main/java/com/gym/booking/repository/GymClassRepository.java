@@ -1,15 +1,123 @@
 package com.gym.booking.repository;
 
+import com.gym.booking.dto.GymClassDTO;
 import com.gym.booking.model.GymClass;
 import com.gym.booking.model.User;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 public interface GymClassRepository extends JpaRepository<GymClass, Long> {
     List<GymClass> findByTrainer(User trainer);
+
     // Note: Cannot search by name directly as it's derived from ClassType
 
     long countByClassType_Id(Long classTypeId);
 
     long countByTrainer_Id(Long trainerId);
-}
\ No newline at end of file
+
+    // Read-only listings select straight into GymClassDTO: nothing is
+    // hydrated into the persistence context and there is nothing to flush
+    String DTO_SELECT = "select new com.gym.booking.dto.GymClassDTO(g.id, ct.name, g.description, g.capacity, "
+            + "g.durationMinutes, g.trainer.id, ct.id, g.status, g.kind, g.allocationMode, g.lotteryClosesAt, "
+            + "g.bookedCount, g.startTime, g.endTime, g.location) from GymClass g left join g.classType ct ";
+
+    @Query(DTO_SELECT)
+    List<GymClassDTO> findAllDTOs();
+
+    @Query(DTO_SELECT + "where g.id in :ids order by g.startTime, g.id")
+    List<GymClassDTO> findDTOsByIds(@Param("ids") Collection<Long> ids);
+
+    @Query(DTO_SELECT + "where g.trainer.id = :trainerId")
+    List<GymClassDTO> findDTOsByTrainerId(@Param("trainerId") Long trainerId);
+
+    // Keyset page ordered by (start_time, id), starting strictly after the
+    // cursor. Optional filters are skipped when null. Served by
+    // idx_class_instances_start_time_id
+    @Query(DTO_SELECT + "where g.startTime >= :afterStart "
+            + "and (g.startTime > :afterStart or g.id > :afterId) "
+            + "and (:to is null or g.startTime < :to) "
+            + "and (:kind is null or g.kind = :kind) "
+            + "and (:classTypeId is null or ct.id = :classTypeId) "
+            + "and (:trainerId is null or g.trainer.id = :trainerId) "
+            + "order by g.startTime, g.id")
+    List<GymClassDTO> findPage(@Param("afterStart") LocalDateTime afterStart, @Param("afterId") Long afterId,
+            @Param("to") LocalDateTime to, @Param("kind") GymClass.ClassKind kind,
+            @Param("classTypeId") Long classTypeId, @Param("trainerId") Long trainerId, Pageable pageable);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select g from GymClass g where g.id = :id")
+    Optional<GymClass> findByIdForUpdate(@Param("id") Long id);
+
+    // Lottery classes whose entry window has closed but were not drawn yet
+    @Query("select g.id from GymClass g where g.allocationMode = :mode "
+            + "and g.lotteryDrawnAt is null and g.lotteryClosesAt <= :now")
+    List<Long> findLotteriesDue(@Param("mode") GymClass.AllocationMode mode, @Param("now") LocalDateTime now);
+
+    // Remaining seats for a bookable (not cancelled, not started) class; null
+    // when the class is missing or no longer bookable
+    @Query("select g.capacity - g.bookedCount from GymClass g where g.id = :id "
+            + "and (g.isCancelled is null or g.isCancelled = false) and g.startTime > :now")
+    Integer findRemainingSeats(@Param("id") Long id, @Param("now") LocalDateTime now);
+
+    // Bulk variant of findRemainingSeats: rows of [id, remaining]
+    @Query("select g.id, g.capacity - g.bookedCount from GymClass g where g.id in :ids "
+            + "and (g.isCancelled is null or g.isCancelled = false) and g.startTime > :now")
+    List<Object[]> findRemainingSeats(@Param("ids") Collection<Long> ids, @Param("now") LocalDateTime now);
+
+    // Atomically take one seat if capacity allows. Returns 1 on success, 0 when
+    // the class is full (or does not exist)
+    @Modifying
+    @Query(value = "UPDATE class_instances SET booked_count = booked_count + 1 "
+            + "WHERE id = :id AND booked_count < capacity", nativeQuery = true)
+    int tryReserveSeat(@Param("id") Long id);
+
+    // Give back seats, never going below zero
+    @Modifying
+    @Query(value = "UPDATE class_instances SET booked_count = GREATEST(booked_count - :seats, 0) "
+            + "WHERE id = :id", nativeQuery = true)
+    int releaseSeats(@Param("id") Long id, @Param("seats") int seats);
+
+    // Row-lock the scheduled, not yet cancelled classes starting in [from, to]
+    // so a facility closure cancels a stable set
+    @Query(value = "SELECT id FROM class_instances WHERE start_time >= :from AND start_time <= :to "
+            + "AND COALESCE(is_cancelled, FALSE) = FALSE AND status = 'SCHEDULED' ORDER BY id FOR UPDATE",
+            nativeQuery = true)
+    List<Long> lockScheduledStartingBetween(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    @Modifying
+    @Query(value = "UPDATE class_instances SET status = 'CANCELLED', is_cancelled = TRUE, updated_at = :now "
+            + "WHERE id IN (:ids)", nativeQuery = true)
+    int cancelAll(@Param("ids") Collection<Long> ids, @Param("now") LocalDateTime now);
+
+    // Classes starting at or after :since whose booked_count disagrees with
+    // their BOOKED rows. A plain read: nothing is locked while it scans
+    @Query(value = "SELECT c.id FROM class_instances c "
+            + "LEFT JOIN bookings b ON b.class_instance_id = c.id AND b.status = 'BOOKED' "
+            + "WHERE c.start_time >= :since GROUP BY c.id, c.booked_count "
+            + "HAVING c.booked_count <> COUNT(b.id) ORDER BY c.id", nativeQuery = true)
+    List<Long> findDriftedCounters(@Param("since") LocalDateTime since);
+
+    // Row-lock only the counters reconcileBookedCounts will touch, in id order,
+    // so in-flight admissions on them finish before the recount
+    @Query(value = "SELECT id FROM class_instances WHERE id IN (:ids) ORDER BY id FOR UPDATE", nativeQuery = true)
+    List<Long> lockCounters(@Param("ids") Collection<Long> ids);
+
+    // Repair drift between booked_count and the BOOKED rows in bookings for
+    // the given classes. Returns the number of corrected rows
+    @Modifying
+    @Query(value = "UPDATE class_instances ci SET booked_count = x.cnt "
+            + "FROM (SELECT c.id, COUNT(b.id) AS cnt FROM class_instances c "
+            + "      LEFT JOIN bookings b ON b.class_instance_id = c.id AND b.status = 'BOOKED' "
+            + "      WHERE c.id IN (:ids) GROUP BY c.id) x "
+            + "WHERE ci.id = x.id AND ci.booked_count <> x.cnt", nativeQuery = true)
+    int reconcileBookedCounts(@Param("ids") Collection<Long> ids);
+}
@@ -0,0 +1,59 @@
+package com.gym.booking.repository;
+
+import com.gym.booking.model.IdempotencyKey;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+public interface IdempotencyKeyRepository extends JpaRepository<IdempotencyKey, Long> {
+
+    Optional<IdempotencyKey> findByIdemKeyAndPrincipalAndEndpoint(String idemKey, String principal, String endpoint);
+
+    // Claim a key in one statement. Returns 1 when the caller owns the key: it
+    // was new, its record expired, or a previous holder stalled past :staleBefore
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO idempotency_keys (idem_key, principal, endpoint, request_hash, status, "
+            + "locked_at, expires_at, created_at) "
+            + "VALUES (:key, :principal, :endpoint, :requestHash, 'IN_PROGRESS', :now, :expiresAt, :now) "
+            + "ON CONFLICT (idem_key, principal, endpoint) DO UPDATE SET "
+            + "request_hash = EXCLUDED.request_hash, status = 'IN_PROGRESS', response_status = NULL, "
+            + "response_body = NULL, response_location = NULL, locked_at = EXCLUDED.locked_at, "
+            + "expires_at = EXCLUDED.expires_at, updated_at = EXCLUDED.locked_at "
+            + "WHERE idempotency_keys.expires_at <= :now "
+            + "OR (idempotency_keys.status = 'IN_PROGRESS' AND idempotency_keys.locked_at < :staleBefore)",
+            nativeQuery = true)
+    int claim(@Param("key") String key, @Param("principal") String principal, @Param("endpoint") String endpoint,
+            @Param("requestHash") String requestHash, @Param("now") LocalDateTime now,
+            @Param("expiresAt") LocalDateTime expiresAt, @Param("staleBefore") LocalDateTime staleBefore);
+
+    // complete and release only touch the claim identified by :lockedAt, so a
+    // holder whose stale claim was taken over cannot clobber the new one
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE idempotency_keys SET status = 'COMPLETED', response_status = :responseStatus, "
+            + "response_body = :responseBody, response_location = :responseLocation, updated_at = :now "
+            + "WHERE idem_key = :key AND principal = :principal AND endpoint = :endpoint "
+            + "AND status = 'IN_PROGRESS' AND locked_at = :lockedAt", nativeQuery = true)
+    int complete(@Param("key") String key, @Param("principal") String principal, @Param("endpoint") String endpoint,
+            @Param("lockedAt") LocalDateTime lockedAt, @Param("responseStatus") int responseStatus,
+            @Param("responseBody") String responseBody, @Param("responseLocation") String responseLocation,
+            @Param("now") LocalDateTime now);
+
+    // Give the key back after a failed attempt so the client can retry it
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM idempotency_keys WHERE idem_key = :key AND principal = :principal "
+            + "AND endpoint = :endpoint AND status = 'IN_PROGRESS' AND locked_at = :lockedAt", nativeQuery = true)
+    int release(@Param("key") String key, @Param("principal") String principal, @Param("endpoint") String endpoint,
+            @Param("lockedAt") LocalDateTime lockedAt);
+
+    @Transactional
+    @Modifying
+    @Query("delete from IdempotencyKey k where k.expiresAt <= :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
+}
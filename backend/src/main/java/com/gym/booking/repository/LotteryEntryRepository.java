@@ -0,0 +1,10 @@
+package com.gym.booking.repository;
+
+import com.gym.booking.model.LotteryEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface LotteryEntryRepository extends JpaRepository<LotteryEntry, Long> {
+    boolean existsByClassInstance_IdAndUser_Id(Long classInstanceId, Long userId);
+
+    long countByClassInstance_Id(Long classInstanceId);
+}
@@ -0,0 +1,113 @@
+package com.gym.booking.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Plain JDBC access for the lottery draw, which works on whole entry sets at
+ * once and would otherwise cost one statement per entrant through JPA.
+ */
+@Repository
+public class LotteryJdbcRepository {
+
+    public record Entrant(Long userId, long recentAttendance) {
+    }
+
+    public record DrawnBooking(Long id, Long userId, String status) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public LotteryJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Entrants of a class with the number of classes each attended since
+     * {@code attendedSince}. Users who already hold a booked or waitlisted seat
+     * for the class are left out.
+     */
+    public List<Entrant> findEntrants(Long classInstanceId, LocalDateTime attendedSince) {
+        return jdbcTemplate.query(
+                "SELECT e.user_id, COUNT(b.id) AS attended FROM lottery_entries e "
+                        + "LEFT JOIN bookings b ON b.user_id = e.user_id AND b.status = 'COMPLETED' "
+                        + "     AND b.attended_at >= ? "
+                        + "WHERE e.class_instance_id = ? AND NOT EXISTS ("
+                        + "     SELECT 1 FROM bookings a WHERE a.class_instance_id = e.class_instance_id "
+                        + "     AND a.user_id = e.user_id AND a.status IN ('BOOKED', 'WAITLISTED')) "
+                        + "GROUP BY e.id, e.user_id ORDER BY e.id",
+                (rs, rowNum) -> new Entrant(rs.getLong("user_id"), rs.getLong("attended")),
+                Timestamp.valueOf(attendedSince), classInstanceId);
+    }
+
+    /**
+     * Allocate {@code count} positions from the shared waitlist sequence in a
+     * single round trip, in ascending order.
+     */
+    public List<Long> nextWaitlistPositions(int count) {
+        if (count <= 0) {
+            return new ArrayList<>();
+        }
+        return jdbcTemplate.queryForList(
+                "SELECT nextval('booking_waitlist_seq') FROM generate_series(1, ?)", Long.class, count);
+    }
+
+    /**
+     * Insert the draw result in one statement: winners as BOOKED, losers as
+     * WAITLISTED with the given positions (same order as {@code waitlisted}).
+     * Returns the inserted bookings.
+     */
+    public List<DrawnBooking> insertDrawnBookings(Long classInstanceId, List<Long> winners, List<Long> waitlisted,
+            List<Long> positions, LocalDateTime now) {
+        int size = winners.size() + waitlisted.size();
+        if (size == 0) {
+            return new ArrayList<>();
+        }
+        Long[] userIds = new Long[size];
+        String[] statuses = new String[size];
+        Long[] waitlistPositions = new Long[size];
+        for (int i = 0; i < winners.size(); i++) {
+            userIds[i] = winners.get(i);
+            statuses[i] = "BOOKED";
+        }
+        for (int i = 0; i < waitlisted.size(); i++) {
+            userIds[winners.size() + i] = waitlisted.get(i);
+            statuses[winners.size() + i] = "WAITLISTED";
+            waitlistPositions[winners.size() + i] = positions.get(i);
+        }
+        return jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(
+                    "INSERT INTO bookings (user_id, class_instance_id, status, waitlist_position, created_at) "
+                            + "SELECT d.user_id, ?, d.status, d.position, ? "
+                            + "FROM unnest(CAST(? AS BIGINT[]), CAST(? AS VARCHAR[]), CAST(? AS BIGINT[])) "
+                            + "AS d(user_id, status, position) "
+                            + "RETURNING id, user_id, status");
+            ps.setLong(1, classInstanceId);
+            ps.setTimestamp(2, Timestamp.valueOf(now));
+            ps.setArray(3, con.createArrayOf("bigint", userIds));
+            ps.setArray(4, con.createArrayOf("varchar", statuses));
+            ps.setArray(5, con.createArrayOf("bigint", waitlistPositions));
+            return ps;
+        }, (rs, rowNum) -> new DrawnBooking(rs.getLong("id"), rs.getLong("user_id"), rs.getString("status")));
+    }
+
+    /**
+     * Close the lottery and account for the seats handed out by the draw.
+     */
+    public int markDrawn(Long classInstanceId, int seatsTaken, LocalDateTime now) {
+        return jdbcTemplate.update(
+                "UPDATE class_instances SET booked_count = booked_count + ?, lottery_drawn_at = ? "
+                        + "WHERE id = ? AND lottery_drawn_at IS NULL",
+                seatsTaken, Timestamp.valueOf(now), classInstanceId);
+    }
+
+    public int deleteEntries(Long classInstanceId) {
+        return jdbcTemplate.update("DELETE FROM lottery_entries WHERE class_instance_id = ?", classInstanceId);
+    }
+}
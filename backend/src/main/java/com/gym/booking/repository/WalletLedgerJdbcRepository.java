@@ -0,0 +1,201 @@
+package com.gym.booking.repository;
+
+import com.gym.booking.dto.WalletTransactionDTO;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Writes to and balance reads from the append-only wallet ledger
+ * (wallet_transactions). A trigger applies each entry to users.wallet_balance.
+ *
+ * Every write locks the member row before the entry gets its id, so one
+ * member's entries are committed in id order. That is what lets a snapshot
+ * stand for "all entries up to id N": the balance is the latest snapshot plus
+ * the (short) tail of entries after it, however long the ledger grows.
+ */
+@Repository
+public class WalletLedgerJdbcRepository {
+
+    public record ChargeRequest(Long userId, BigDecimal amount, String reference) {
+    }
+
+    /**
+     * transactionId and type are null when nothing was written to the ledger
+     * (empty wallet).
+     */
+    public record ChargeOutcome(Long userId, boolean fullyDebited, boolean bonusConsumed, BigDecimal charged,
+            Long transactionId, String type) {
+    }
+
+    private static final String INSERT_ENTRY = "INSERT INTO wallet_transactions (user_id, amount, type, reference, "
+            + "created_at) ";
+
+    // One round trip for any number of members: lock them (in id order, so
+    // concurrent batches cannot deadlock), debit what is available, consume a
+    // bonus day where the wallet falls short, write the entries, report back
+    private static final String CHARGE_SQL = "WITH req AS (SELECT * FROM unnest(CAST(? AS BIGINT[]), "
+            + "CAST(? AS NUMERIC[]), CAST(? AS TEXT[])) AS r(user_id, amount, reference)), "
+            + "locked AS (SELECT u.id, u.wallet_balance, COALESCE(u.bonus_days, 0) AS bonus_days, req.amount, "
+            + "req.reference FROM users u JOIN req ON u.id = req.user_id ORDER BY u.id FOR UPDATE OF u), "
+            + "decision AS (SELECT id, reference, wallet_balance >= amount AS full_debit, "
+            + "CASE WHEN wallet_balance >= amount THEN amount ELSE GREATEST(wallet_balance, 0) END AS charged, "
+            + "wallet_balance < amount AND bonus_days > 0 AS bonus FROM locked), "
+            + "bonus AS (UPDATE users u SET bonus_days = COALESCE(u.bonus_days, 0) - 1 "
+            + "FROM decision d WHERE u.id = d.id AND d.bonus RETURNING u.id), "
+            + "ledger AS (" + INSERT_ENTRY
+            + "SELECT d.id, -d.charged, CASE WHEN d.full_debit THEN 'CHARGE' ELSE 'CHARGE_PARTIAL' END, "
+            + "d.reference, ? FROM decision d WHERE d.full_debit OR d.charged > 0 RETURNING id, user_id, type) "
+            + "SELECT d.id AS user_id, d.full_debit, d.bonus, d.charged, l.id AS transaction_id, l.type "
+            + "FROM decision d LEFT JOIN ledger l ON l.user_id = d.id";
+
+    private static final String LATEST_SNAPSHOT = "LEFT JOIN LATERAL (SELECT ws.balance, ws.last_transaction_id "
+            + "FROM wallet_snapshots ws WHERE ws.user_id = u.id %s"
+            + "ORDER BY ws.last_transaction_id DESC LIMIT 1) s ON TRUE ";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public WalletLedgerJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Append an entry of {@code amount}. Returns its id, or null when the user
+     * does not exist.
+     */
+    public Long append(Long userId, BigDecimal amount, String type, String reference, LocalDateTime now) {
+        return single(jdbcTemplate.query("WITH locked AS (SELECT id FROM users WHERE id = ? FOR UPDATE) "
+                + INSERT_ENTRY + "SELECT id, ?, ?, ?, ? FROM locked RETURNING id",
+                (rs, rowNum) -> rs.getLong("id"), userId, amount, type, reference, Timestamp.valueOf(now)));
+    }
+
+    /**
+     * Append the entry that brings the balance to {@code target}. Returns its
+     * id, or null when the user does not exist.
+     */
+    public Long appendSetBalance(Long userId, BigDecimal target, String reference, LocalDateTime now) {
+        return single(jdbcTemplate.query("WITH locked AS (SELECT id, wallet_balance FROM users WHERE id = ? "
+                + "FOR UPDATE) " + INSERT_ENTRY
+                + "SELECT id, CAST(? AS NUMERIC) - wallet_balance, 'SET', ?, ? FROM locked RETURNING id",
+                (rs, rowNum) -> rs.getLong("id"), userId, target, reference, Timestamp.valueOf(now)));
+    }
+
+    /**
+     * Charge {@code amount}: the full amount when the balance covers it,
+     * otherwise whatever positive balance is left plus one bonus day if the
+     * member has any. Returns null when the user does not exist.
+     */
+    public ChargeOutcome charge(Long userId, BigDecimal amount, String reference, LocalDateTime now) {
+        return single(chargeAll(List.of(new ChargeRequest(userId, amount, reference)), now));
+    }
+
+    /**
+     * {@link #charge} for many members in one statement. Each member may
+     * appear only once; unknown users are left out of the result.
+     */
+    public List<ChargeOutcome> chargeAll(List<ChargeRequest> requests, LocalDateTime now) {
+        if (requests.isEmpty()) {
+            return List.of();
+        }
+        Long[] userIds = new Long[requests.size()];
+        BigDecimal[] amounts = new BigDecimal[requests.size()];
+        String[] references = new String[requests.size()];
+        for (int i = 0; i < requests.size(); i++) {
+            userIds[i] = requests.get(i).userId();
+            amounts[i] = requests.get(i).amount();
+            references[i] = requests.get(i).reference();
+        }
+        return jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(CHARGE_SQL);
+            ps.setArray(1, con.createArrayOf("bigint", userIds));
+            ps.setArray(2, con.createArrayOf("numeric", amounts));
+            ps.setArray(3, con.createArrayOf("text", references));
+            ps.setTimestamp(4, Timestamp.valueOf(now));
+            return ps;
+        }, (rs, rowNum) -> {
+            long transactionId = rs.getLong("transaction_id");
+            Long tx = rs.wasNull() ? null : transactionId;
+            return new ChargeOutcome(rs.getLong("user_id"), rs.getBoolean("full_debit"), rs.getBoolean("bonus"),
+                    rs.getBigDecimal("charged"), tx, rs.getString("type"));
+        });
+    }
+
+    /**
+     * Current balance: latest snapshot plus the entries after it. Null when
+     * the user does not exist.
+     */
+    public BigDecimal balance(Long userId) {
+        return single(jdbcTemplate.query("SELECT COALESCE(s.balance, 0) + COALESCE((SELECT SUM(t.amount) "
+                + "FROM wallet_transactions t WHERE t.user_id = u.id "
+                + "AND t.id > COALESCE(s.last_transaction_id, 0)), 0) AS balance "
+                + "FROM users u " + String.format(LATEST_SNAPSHOT, "") + "WHERE u.id = ?",
+                (rs, rowNum) -> rs.getBigDecimal("balance"), userId));
+    }
+
+    /**
+     * Balance right after the last entry created at or before {@code at}:
+     * the nearest snapshot taken up to then plus the entries that follow it
+     * up to {@code at}. Null when the user does not exist.
+     */
+    public BigDecimal balanceAsOf(Long userId, LocalDateTime at) {
+        Timestamp ts = Timestamp.valueOf(at);
+        return single(jdbcTemplate.query("SELECT COALESCE(s.balance, 0) + COALESCE((SELECT SUM(t.amount) "
+                + "FROM wallet_transactions t WHERE t.user_id = u.id "
+                + "AND t.id > COALESCE(s.last_transaction_id, 0) AND t.created_at <= ?), 0) AS balance "
+                + "FROM users u " + String.format(LATEST_SNAPSHOT, "AND ws.as_of <= ? ") + "WHERE u.id = ?",
+                (rs, rowNum) -> rs.getBigDecimal("balance"), ts, ts, userId));
+    }
+
+    /**
+     * Write a snapshot for every member with at least {@code minEntries}
+     * entries since their latest one. Each member's tail is read through the
+     * (user_id, id) index. Returns the number of snapshots written.
+     */
+    public int snapshot(int minEntries, LocalDateTime now) {
+        return jdbcTemplate.update("INSERT INTO wallet_snapshots (user_id, last_transaction_id, balance, as_of, "
+                + "created_at) "
+                + "SELECT u.id, tail.last_id, COALESCE(s.balance, 0) + tail.amount, tail.as_of, ? "
+                + "FROM users u " + String.format(LATEST_SNAPSHOT, "")
+                + "CROSS JOIN LATERAL (SELECT COUNT(*) AS entries, SUM(t.amount) AS amount, MAX(t.id) AS last_id, "
+                + "MAX(t.created_at) AS as_of FROM wallet_transactions t WHERE t.user_id = u.id "
+                + "AND t.id > COALESCE(s.last_transaction_id, 0)) tail "
+                + "WHERE tail.entries >= ? ON CONFLICT DO NOTHING",
+                Timestamp.valueOf(now), Math.max(1, minEntries));
+    }
+
+    /**
+     * One keyset page of a member's history, newest first, strictly before the
+     * (beforeAt, beforeId) cursor, with the balance right after each entry.
+     * The balance at the cursor comes from the nearest snapshot plus its tail,
+     * and the running balance within the page from a window sum, so the cost
+     * does not depend on how deep the page is or how long the ledger is.
+     */
+    public List<WalletTransactionDTO> history(Long userId, LocalDateTime beforeAt, long beforeId, int limit) {
+        Timestamp at = Timestamp.valueOf(beforeAt);
+        return jdbcTemplate.query("WITH start AS (SELECT COALESCE(s.balance, 0) + COALESCE((SELECT SUM(t.amount) "
+                + "FROM wallet_transactions t WHERE t.user_id = u.id AND t.id > COALESCE(s.last_transaction_id, 0) "
+                + "AND t.created_at <= ? AND (t.created_at < ? OR t.id < ?)), 0) AS balance "
+                + "FROM users u " + String.format(LATEST_SNAPSHOT, "AND ws.as_of <= ? AND ws.last_transaction_id < ? ")
+                + "WHERE u.id = ?), "
+                + "page AS (SELECT id, amount, type, reference, created_at FROM wallet_transactions "
+                + "WHERE user_id = ? AND created_at <= ? AND (created_at < ? OR id < ?) "
+                + "ORDER BY created_at DESC, id DESC LIMIT ?) "
+                + "SELECT p.id, p.amount, p.type, p.reference, p.created_at, "
+                + "st.balance - COALESCE(SUM(p.amount) OVER (ORDER BY p.created_at DESC, p.id DESC "
+                + "ROWS BETWEEN UNBOUNDED PRECEDING AND 1 PRECEDING), 0) AS balance_after "
+                + "FROM page p CROSS JOIN start st ORDER BY p.created_at DESC, p.id DESC",
+                (rs, rowNum) -> new WalletTransactionDTO(rs.getLong("id"), rs.getBigDecimal("amount"),
+                        rs.getString("type"), rs.getString("reference"),
+                        rs.getTimestamp("created_at").toLocalDateTime(), rs.getBigDecimal("balance_after")),
+                at, at, beforeId, at, beforeId, userId, userId, at, at, beforeId, limit);
+    }
+
+    private static <T> T single(List<T> rows) {
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+}
@@ -0,0 +1,117 @@
+package com.gym.booking.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.gym.booking.dto.AuditLogDTO;
+import com.gym.booking.model.AuditLog;
+import com.gym.booking.repository.AuditLogRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read side of the audit trail. Queries are always bounded in time so only
+ * the matching monthly partitions of audit_logs are scanned; metadata filters
+ * are pushed down to Postgres as jsonb containment.
+ */
+@Service
+@Transactional(readOnly = true)
+public class AuditLogService {
+
+    private final AuditLogRepository auditLogRepository;
+    private final ObjectMapper objectMapper;
+    private final ZoneId zoneId;
+    private final int defaultWindowDays;
+
+    public AuditLogService(AuditLogRepository auditLogRepository, ObjectMapper objectMapper,
+            @Value("${APP_TIMEZONE:Europe/Athens}") String appTimezone,
+            @Value("${app.audit.query.default-window-days:30}") int defaultWindowDays) {
+        this.auditLogRepository = auditLogRepository;
+        this.objectMapper = objectMapper;
+        this.zoneId = ZoneId.of(appTimezone);
+        this.defaultWindowDays = defaultWindowDays;
+    }
+
+    /**
+     * One keyset page of audit entries in [from, to), newest first. {@code to}
+     * defaults to now and {@code from} to the default window before it; pass
+     * the last row's createdAt and id as the cursor to continue. Fetches up to
+     * {@code limit} rows, so callers wanting to detect a next page ask for one
+     * extra.
+     *
+     * An action ending in {@code *} matches by prefix (e.g. {@code WALLET_*}).
+     * {@code metadata} is a JSON object the entry's metadata must contain,
+     * {@code bookingId} is shorthand for {"bookingId": ...} and
+     * {@code minAmount} a lower bound on the magnitude of metadata.amount.
+     */
+    public List<AuditLogDTO> findPage(LocalDateTime from, LocalDateTime to, Long actorId, String action,
+            String targetType, Long targetId, String metadata, Long bookingId, BigDecimal minAmount,
+            LocalDateTime beforeAt, Long beforeId, int limit) {
+        LocalDateTime windowEnd = to != null ? to : LocalDateTime.now(zoneId);
+        LocalDateTime windowStart = from != null ? from : windowEnd.minusDays(defaultWindowDays);
+        // No cursor: everything strictly before the window end
+        LocalDateTime cursorAt = windowEnd;
+        long cursorId = Long.MIN_VALUE;
+        if (beforeAt != null && !beforeAt.isAfter(windowEnd)) {
+            cursorAt = beforeAt;
+            cursorId = beforeId != null ? beforeId : Long.MIN_VALUE;
+        }
+        String exactAction = action;
+        String actionPrefix = null;
+        if (action != null && action.endsWith("*")) {
+            exactAction = null;
+            actionPrefix = escapeLike(action.substring(0, action.length() - 1)) + "%";
+        }
+        PageRequest page = PageRequest.of(0, limit);
+        if (metadata == null && bookingId == null && minAmount == null) {
+            return auditLogRepository.findPage(windowStart, cursorAt, cursorId, actorId, exactAction, actionPrefix,
+                    targetType, targetId, page);
+        }
+        List<AuditLog> entries = auditLogRepository.findPageByMetadata(containment(metadata, bookingId), minAmount,
+                windowStart, cursorAt, cursorId, actorId, exactAction, actionPrefix, targetType, targetId, page);
+        List<AuditLogDTO> dtos = new ArrayList<>(entries.size());
+        for (AuditLog entry : entries) {
+            dtos.add(new AuditLogDTO(entry.getId(), entry.getActor() != null ? entry.getActor().getId() : null,
+                    entry.getAction(), entry.getTargetType(), entry.getTargetId(), entry.getMetadata(),
+                    entry.getCreatedAt()));
+        }
+        return dtos;
+    }
+
+    // Merge the raw JSON filter and the shorthand keys into one object;
+    // an empty object contains everything
+    private String containment(String metadata, Long bookingId) {
+        ObjectNode filter;
+        if (metadata == null || metadata.isBlank()) {
+            filter = objectMapper.createObjectNode();
+        } else {
+            JsonNode parsed;
+            try {
+                parsed = objectMapper.readTree(metadata);
+            } catch (JsonProcessingException e) {
+                throw new IllegalArgumentException("metadata must be a JSON object");
+            }
+            if (!(parsed instanceof ObjectNode node)) {
+                throw new IllegalArgumentException("metadata must be a JSON object");
+            }
+            filter = node;
+        }
+        if (bookingId != null) {
+            filter.put(AuditMetadata.BOOKING_ID, bookingId);
+        }
+        return filter.toString();
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
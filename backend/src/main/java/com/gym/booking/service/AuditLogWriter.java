@@ -0,0 +1,245 @@
+package com.gym.booking.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gym.booking.repository.AuditLogJdbcRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Asynchronous audit trail.
+ *
+ * Request threads append events to a bounded in-memory buffer and return;
+ * a single background thread drains it and writes batches to audit_logs with
+ * JDBC batch inserts. Events recorded inside a transaction are only enqueued
+ * once it commits, so rolled-back work leaves no trail.
+ *
+ * When the buffer is full the configured overflow policy applies:
+ * DROP_NEWEST discards the incoming event, DROP_OLDEST evicts the oldest
+ * queued one, and BLOCK makes the caller wait up to block-timeout for space
+ * (backpressure) before dropping. Dropped events are counted, never thrown.
+ * On shutdown the writer stops accepting events and flushes what is queued.
+ */
+@Service
+public class AuditLogWriter {
+    private static final Logger log = LoggerFactory.getLogger(AuditLogWriter.class);
+
+    public enum OverflowPolicy {
+        DROP_NEWEST,
+        DROP_OLDEST,
+        BLOCK
+    }
+
+    private record Event(Long actorId, String action, String targetType, Long targetId, Map<String, Object> metadata,
+            LocalDateTime createdAt) {
+    }
+
+    private final AuditLogJdbcRepository auditLogJdbcRepository;
+    private final PrincipalResolver principalResolver;
+    private final ObjectMapper objectMapper;
+    private final ZoneId zoneId;
+    private final boolean enabled;
+    private final OverflowPolicy overflowPolicy;
+    private final long blockTimeoutMillis;
+    private final int batchSize;
+    private final long flushIntervalMillis;
+    private final ArrayBlockingQueue<Event> buffer;
+    private final Thread worker;
+    private volatile boolean running = true;
+
+    private final Counter written;
+    private final Counter dropped;
+    private final Counter failed;
+    private final Timer flushLatency;
+
+    public AuditLogWriter(AuditLogJdbcRepository auditLogJdbcRepository,
+            PrincipalResolver principalResolver,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            @Value("${APP_TIMEZONE:Europe/Athens}") String appTimezone,
+            @Value("${app.audit.enabled:true}") boolean enabled,
+            @Value("${app.audit.buffer-capacity:10000}") int bufferCapacity,
+            @Value("${app.audit.overflow-policy:DROP_NEWEST}") OverflowPolicy overflowPolicy,
+            @Value("${app.audit.block-timeout-ms:50}") long blockTimeoutMillis,
+            @Value("${app.audit.batch-size:500}") int batchSize,
+            @Value("${app.audit.flush-interval-ms:1000}") long flushIntervalMillis) {
+        this.auditLogJdbcRepository = auditLogJdbcRepository;
+        this.principalResolver = principalResolver;
+        this.objectMapper = objectMapper;
+        this.zoneId = ZoneId.of(appTimezone);
+        this.enabled = enabled;
+        this.overflowPolicy = overflowPolicy;
+        this.blockTimeoutMillis = blockTimeoutMillis;
+        this.batchSize = Math.max(1, batchSize);
+        this.flushIntervalMillis = Math.max(1, flushIntervalMillis);
+        this.buffer = new ArrayBlockingQueue<>(Math.max(1, bufferCapacity));
+
+        Gauge.builder("audit.queue.depth", buffer, ArrayBlockingQueue::size)
+                .description("Audit events waiting to be written")
+                .register(meterRegistry);
+        this.written = Counter.builder("audit.events.written").register(meterRegistry);
+        this.dropped = Counter.builder("audit.events.dropped")
+                .tag("policy", overflowPolicy.name())
+                .register(meterRegistry);
+        this.failed = Counter.builder("audit.events.failed")
+                .description("Audit events lost because their batch insert failed")
+                .register(meterRegistry);
+        this.flushLatency = Timer.builder("audit.flush.latency")
+                .description("Time to write one batch of audit events")
+                .register(meterRegistry);
+
+        this.worker = Thread.ofPlatform().name("audit-log-writer").daemon().unstarted(this::run);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (enabled) {
+            worker.start();
+        }
+    }
+
+    /**
+     * Record an action by the current user (if any) on the given target.
+     */
+    public void record(String action, String targetType, Long targetId, AuditMetadata metadata) {
+        if (!enabled) {
+            return;
+        }
+        Long actorId = principalResolver.resolve(SecurityContextHolder.getContext().getAuthentication())
+                .map(PrincipalResolver.ResolvedPrincipal::userId)
+                .orElse(null);
+        Event event = new Event(actorId, action, targetType, targetId,
+                metadata != null ? metadata.build() : null, LocalDateTime.now(zoneId));
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            enqueue(event);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                enqueue(event);
+            }
+        });
+    }
+
+    public int getQueueDepth() {
+        return buffer.size();
+    }
+
+    private void enqueue(Event event) {
+        if (!running) {
+            dropped.increment();
+            return;
+        }
+        boolean accepted = switch (overflowPolicy) {
+            case DROP_NEWEST -> buffer.offer(event);
+            case DROP_OLDEST -> offerEvictingOldest(event);
+            case BLOCK -> offerWaiting(event);
+        };
+        if (!accepted) {
+            dropped.increment();
+        }
+    }
+
+    private boolean offerEvictingOldest(Event event) {
+        while (!buffer.offer(event)) {
+            if (buffer.poll() != null) {
+                dropped.increment();
+            }
+        }
+        return true;
+    }
+
+    private boolean offerWaiting(Event event) {
+        try {
+            return buffer.offer(event, blockTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void run() {
+        List<Event> batch = new ArrayList<>(batchSize);
+        while (running || !buffer.isEmpty()) {
+            try {
+                Event first = buffer.poll(flushIntervalMillis, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                buffer.drainTo(batch, batchSize - 1);
+                flush(batch);
+            } catch (InterruptedException e) {
+                // Shutdown: the loop condition drains whatever is left
+                running = false;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<Event> batch) {
+        List<AuditLogJdbcRepository.Row> rows = new ArrayList<>(batch.size());
+        for (Event event : batch) {
+            rows.add(new AuditLogJdbcRepository.Row(event.actorId(), event.action(), event.targetType(),
+                    event.targetId(), toJson(event.metadata()), event.createdAt()));
+        }
+        long start = System.nanoTime();
+        try {
+            auditLogJdbcRepository.insertBatch(rows);
+            written.increment(rows.size());
+        } catch (RuntimeException e) {
+            failed.increment(rows.size());
+            log.error("Failed to write {} audit event(s)", rows.size(), e);
+        } finally {
+            flushLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private String toJson(Map<String, Object> metadata) {
+        if (metadata == null || metadata.isEmpty()) {
+            return null;
+        }
+        try {
+            return objectMapper.writeValueAsString(metadata);
+        } catch (Exception e) {
+            log.warn("Could not serialize audit metadata {}", metadata, e);
+            return null;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        if (!worker.isAlive()) {
+            return;
+        }
+        try {
+            worker.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!buffer.isEmpty()) {
+            log.warn("Audit writer stopped with {} event(s) still queued", buffer.size());
+        }
+    }
+}
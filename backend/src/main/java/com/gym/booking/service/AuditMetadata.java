@@ -0,0 +1,94 @@
+package com.gym.booking.service;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Typed builder for the jsonb metadata of an audit entry. Writers go through
+ * the named setters so the same fact always lands under the same key with the
+ * same JSON type (ids and amounts as numbers), which is what containment
+ * queries such as {@code metadata @> '{"bookingId": 123}'} rely on.
+ * Null values are left out.
+ */
+public final class AuditMetadata {
+
+    public static final String USER_ID = "userId";
+    public static final String BOOKING_ID = "bookingId";
+    public static final String CLASS_INSTANCE_ID = "classInstanceId";
+    public static final String TRANSACTION_ID = "transactionId";
+    public static final String AMOUNT = "amount";
+    public static final String STATUS = "status";
+    public static final String TYPE = "type";
+    public static final String REFERENCE = "reference";
+    public static final String SETTLEMENT_TYPE = "settlementType";
+    public static final String BULK = "bulk";
+    public static final String FROM = "from";
+    public static final String TO = "to";
+
+    private final Map<String, Object> values = new LinkedHashMap<>();
+
+    private AuditMetadata() {
+    }
+
+    public static AuditMetadata builder() {
+        return new AuditMetadata();
+    }
+
+    public AuditMetadata userId(Long userId) {
+        return put(USER_ID, userId);
+    }
+
+    public AuditMetadata bookingId(Long bookingId) {
+        return put(BOOKING_ID, bookingId);
+    }
+
+    public AuditMetadata classInstanceId(Long classInstanceId) {
+        return put(CLASS_INSTANCE_ID, classInstanceId);
+    }
+
+    public AuditMetadata transactionId(Long transactionId) {
+        return put(TRANSACTION_ID, transactionId);
+    }
+
+    public AuditMetadata amount(BigDecimal amount) {
+        return put(AMOUNT, amount);
+    }
+
+    public AuditMetadata status(Enum<?> status) {
+        return put(STATUS, status != null ? status.name() : null);
+    }
+
+    public AuditMetadata type(String type) {
+        return put(TYPE, type);
+    }
+
+    public AuditMetadata reference(String reference) {
+        return put(REFERENCE, reference);
+    }
+
+    public AuditMetadata settlementType(String settlementType) {
+        return put(SETTLEMENT_TYPE, settlementType);
+    }
+
+    public AuditMetadata bulk(boolean bulk) {
+        return put(BULK, bulk);
+    }
+
+    public AuditMetadata change(Enum<?> from, Enum<?> to) {
+        put(FROM, from != null ? from.name() : null);
+        return put(TO, to != null ? to.name() : null);
+    }
+
+    private AuditMetadata put(String key, Object value) {
+        if (value != null) {
+            values.put(key, value);
+        }
+        return this;
+    }
+
+    public Map<String, Object> build() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(values));
+    }
+}
@@ -0,0 +1,64 @@
+package com.gym.booking.service;
+
+import com.gym.booking.repository.AuditPartitionJdbcRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.YearMonth;
+import java.time.ZoneId;
+
+/**
+ * Keeps the monthly audit_logs partitions in shape: partitions for the
+ * current and the next few months exist before rows arrive, and months older
+ * than the retention period are dropped as a whole (no row-by-row DELETE).
+ */
+@Component
+public class AuditPartitionMaintainer {
+    private static final Logger log = LoggerFactory.getLogger(AuditPartitionMaintainer.class);
+
+    private final AuditPartitionJdbcRepository auditPartitionJdbcRepository;
+    private final ZoneId zoneId;
+    private final int monthsAhead;
+    private final int retentionMonths;
+
+    public AuditPartitionMaintainer(AuditPartitionJdbcRepository auditPartitionJdbcRepository,
+            @Value("${APP_TIMEZONE:Europe/Athens}") String appTimezone,
+            @Value("${app.audit.partitions.months-ahead:3}") int monthsAhead,
+            @Value("${app.audit.retention-months:12}") int retentionMonths) {
+        this.auditPartitionJdbcRepository = auditPartitionJdbcRepository;
+        this.zoneId = ZoneId.of(appTimezone);
+        this.monthsAhead = Math.max(1, monthsAhead);
+        this.retentionMonths = retentionMonths;
+    }
+
+    @Scheduled(fixedDelayString = "${app.audit.partitions.maintenance-interval-ms:21600000}",
+            initialDelayString = "${app.audit.partitions.initial-delay-ms:30000}")
+    public void maintain() {
+        YearMonth current = YearMonth.now(zoneId);
+        try {
+            for (int i = 0; i <= monthsAhead; i++) {
+                auditPartitionJdbcRepository.createPartition(current.plusMonths(i));
+            }
+        } catch (Exception e) {
+            log.error("Creating audit_logs partitions failed", e);
+        }
+        if (retentionMonths <= 0) {
+            return;
+        }
+        // A month is dropped once all of it is older than the retention period
+        YearMonth oldestKept = current.minusMonths(retentionMonths);
+        try {
+            for (YearMonth month : auditPartitionJdbcRepository.findPartitionMonths()) {
+                if (month.isBefore(oldestKept)) {
+                    auditPartitionJdbcRepository.dropPartition(month);
+                    log.info("Dropped audit_logs partition for {}", month);
+                }
+            }
+        } catch (Exception e) {
+            log.error("Audit retention cleanup failed", e);
+        }
+    }
+}
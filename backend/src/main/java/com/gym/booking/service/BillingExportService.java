@@ -0,0 +1,122 @@
+package com.gym.booking.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gym.booking.repository.BillingExportJdbcRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Locale;
+
+/**
+ * Streams billing events as CSV or NDJSON. Each row is written as soon as it
+ * is read from the database cursor, so memory use does not grow with the size
+ * of the export.
+ *
+ * Called from an async task, i.e. after the controller returned, so
+ * the read-only transaction that keeps the cursor open is started here.
+ */
+@Service
+public class BillingExportService {
+
+    public enum Format {
+        CSV("text/csv;charset=UTF-8", "csv"),
+        NDJSON("application/x-ndjson", "ndjson");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        public static Format parse(String value) {
+            try {
+                return Format.valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Unsupported export format: " + value);
+            }
+        }
+    }
+
+    private static final String CSV_HEADER = "id,user_id,user_name,user_email,booking_id,class_name,class_kind,"
+            + "trainer_name,amount,reason,event_date,settled,settlement_type";
+
+    private final BillingExportJdbcRepository billingExportJdbcRepository;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate readOnlyTransaction;
+
+    public BillingExportService(BillingExportJdbcRepository billingExportJdbcRepository, ObjectMapper objectMapper,
+            PlatformTransactionManager transactionManager) {
+        this.billingExportJdbcRepository = billingExportJdbcRepository;
+        this.objectMapper = objectMapper;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    public void export(LocalDateTime startDate, LocalDateTime endDate, Format format, OutputStream out)
+            throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        try {
+            if (format == Format.CSV) {
+                writer.write(CSV_HEADER);
+                writer.write('\n');
+            }
+            readOnlyTransaction.executeWithoutResult(status -> billingExportJdbcRepository.forEachEvent(
+                    startDate, endDate, row -> writeRow(writer, format, row)));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.flush();
+    }
+
+    private void writeRow(Writer writer, Format format, BillingExportJdbcRepository.ExportRow row) {
+        try {
+            if (format == Format.NDJSON) {
+                writer.write(objectMapper.writeValueAsString(row));
+            } else {
+                writer.write(csvLine(row));
+            }
+            writer.write('\n');
+        } catch (IOException e) {
+            // Client went away; abort the query instead of reading the rest
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String csvLine(BillingExportJdbcRepository.ExportRow row) {
+        return String.join(",",
+                csv(row.id()), csv(row.userId()), csv(row.userName()), csv(row.userEmail()), csv(row.bookingId()),
+                csv(row.className()), csv(row.classKind()), csv(row.trainerName()),
+                row.amount() != null ? row.amount().toPlainString() : "", csv(row.reason()),
+                csv(row.eventDate()), csv(row.settled()), csv(row.settlementType()));
+    }
+
+    private static String csv(Object value) {
+        if (value == null) {
+            return "";
+        }
+        String s = value.toString();
+        if (s.indexOf(',') < 0 && s.indexOf('"') < 0 && s.indexOf('\n') < 0 && s.indexOf('\r') < 0) {
+            return s;
+        }
+        return '"' + s.replace("\"", "\"\"") + '"';
+    }
+}
@@ -1,10 +1,16 @@
 package com.gym.booking.service;
 
+import com.gym.booking.dto.BulkSettlementResultDTO;
+import com.gym.booking.dto.RosterCompletionResultDTO;
 import com.gym.booking.model.Booking;
 import com.gym.booking.model.BillingEvent;
 import com.gym.booking.model.GymClass;
 import com.gym.booking.model.User;
+import com.gym.booking.repository.BillingEventJdbcRepository;
 import com.gym.booking.repository.BillingEventRepository;
+import com.gym.booking.repository.BillingRollupJdbcRepository;
+import com.gym.booking.repository.BillingSettlementJdbcRepository;
+import com.gym.booking.repository.BookingJdbcRepository;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -21,6 +27,11 @@ public class BillingService {
     private final BillingEventRepository billingEventRepository;
     private final UserService userService;
     private final com.gym.booking.service.WalletService walletService;
+    private final BillingRollupJdbcRepository billingRollupJdbcRepository;
+    private final BillingSettlementJdbcRepository billingSettlementJdbcRepository;
+    private final AuditLogWriter auditLogWriter;
+    private final BillingEventJdbcRepository billingEventJdbcRepository;
+    private final boolean chargeNoShows;
 
     // Same-day cancellation threshold (12 hours before class start)
     private static final long SAME_DAY_THRESHOLD_HOURS = 12;
@@ -28,11 +39,21 @@ public class BillingService {
 
     public BillingService(BillingEventRepository billingEventRepository,
             UserService userService,
+            BillingRollupJdbcRepository billingRollupJdbcRepository,
+            BillingSettlementJdbcRepository billingSettlementJdbcRepository,
+            AuditLogWriter auditLogWriter,
+            BillingEventJdbcRepository billingEventJdbcRepository,
+            @org.springframework.beans.factory.annotation.Value("${app.billing.charge-no-shows:false}") boolean chargeNoShows,
             @org.springframework.beans.factory.annotation.Autowired(required = false) @org.springframework.context.annotation.Lazy com.gym.booking.service.WalletService walletService,
             @org.springframework.beans.factory.annotation.Value("${APP_TIMEZONE:Europe/Athens}") String appTimezone) {
         this.billingEventRepository = billingEventRepository;
         this.userService = userService;
         this.walletService = walletService;
+        this.billingRollupJdbcRepository = billingRollupJdbcRepository;
+        this.billingSettlementJdbcRepository = billingSettlementJdbcRepository;
+        this.auditLogWriter = auditLogWriter;
+        this.billingEventJdbcRepository = billingEventJdbcRepository;
+        this.chargeNoShows = chargeNoShows;
         this.zoneId = ZoneId.of(appTimezone);
     }
 
@@ -99,13 +120,12 @@ public class BillingService {
                     event.setSettled(true);
                     event.setSettlementType(res.bonusConsumed() ? BillingEvent.SettlementType.BONUS
                             : BillingEvent.SettlementType.PAYMENT);
-                    return billingEventRepository.save(event);
+                    return saveNewEvent(event);
                 } else {
                     // Partially paid or unpaid: create event and mark unsettled
                     event.setSettled(false);
                     event.setSettlementType(BillingEvent.SettlementType.NONE);
-                    BillingEvent saved = billingEventRepository.save(event);
-                    return saved;
+                    return saveNewEvent(event);
                 }
             } else {
                 BillingEvent event = new BillingEvent();
@@ -116,13 +136,78 @@ public class BillingService {
                 event.setEventDate(LocalDateTime.now(zoneId));
                 event.setSettled(false);
                 event.setSettlementType(BillingEvent.SettlementType.NONE);
-                return billingEventRepository.save(event);
+                return saveNewEvent(event);
             }
         }
 
         return null; // No charge
     }
 
+    /**
+     * Bill a closed class roster in bulk: prices every booking in memory,
+     * charges the wallets in one statement, then inserts the billing events
+     * and rollup deltas as JDBC batches. Attended bookings are billed like
+     * createCompletionCharge. No-shows are only billed when
+     * app.billing.charge-no-shows is turned on (off by default).
+     */
+    public RosterCompletionResultDTO chargeRoster(GymClass gymClass,
+            List<BookingJdbcRepository.ChangedBooking> bookings) {
+        LocalDateTime now = LocalDateTime.now(zoneId);
+        List<BookingJdbcRepository.ChangedBooking> billable = bookings.stream()
+                .filter(b -> chargeNoShows || !Booking.BookingStatus.NO_SHOW.name().equals(b.status()))
+                .toList();
+        java.util.Map<Long, User> users = new java.util.HashMap<>();
+        for (User user : userService.findAllById(billable.stream().map(BookingJdbcRepository.ChangedBooking::userId)
+                .collect(java.util.stream.Collectors.toSet()))) {
+            users.put(user.getId(), user);
+        }
+        List<WalletService.BookingCharge> charges = new java.util.ArrayList<>(billable.size());
+        for (BookingJdbcRepository.ChangedBooking booking : billable) {
+            BigDecimal amount = resolveBaseCostForClass(users.get(booking.userId()), gymClass);
+            charges.add(new WalletService.BookingCharge(booking.userId(), booking.bookingId(),
+                    amount != null ? amount : BigDecimal.ZERO));
+        }
+        List<WalletService.WalletChargeResult> results = walletService != null
+                ? walletService.chargeForBookings(charges)
+                : java.util.Collections.nCopies(charges.size(), null);
+
+        RosterCompletionResultDTO result = new RosterCompletionResultDTO();
+        result.setWalletCharged(BigDecimal.ZERO);
+        List<BillingEventJdbcRepository.NewEvent> events = new java.util.ArrayList<>(charges.size());
+        java.util.Map<Long, BillingRollupJdbcRepository.Delta> deltas = new java.util.LinkedHashMap<>();
+        for (int i = 0; i < charges.size(); i++) {
+            WalletService.BookingCharge charge = charges.get(i);
+            WalletService.WalletChargeResult res = results.get(i);
+            BillingEvent.SettlementType type = BillingEvent.SettlementType.NONE;
+            if (res != null && res.fullySettled()) {
+                type = res.bonusConsumed() ? BillingEvent.SettlementType.BONUS : BillingEvent.SettlementType.PAYMENT;
+            }
+            if (res != null) {
+                result.setWalletCharged(result.getWalletCharged().add(res.chargedAmount()));
+            }
+            boolean noShow = Booking.BookingStatus.NO_SHOW.name().equals(billable.get(i).status());
+            events.add(new BillingEventJdbcRepository.NewEvent(charge.userId(), charge.bookingId(), charge.amount(),
+                    noShow ? "No-show" : "Class completed", now, type != BillingEvent.SettlementType.NONE,
+                    type.name()));
+            if (type != BillingEvent.SettlementType.NONE) {
+                result.setChargesSettled(result.getChargesSettled() + 1);
+            }
+            BigDecimal amount = charge.amount();
+            BillingRollupJdbcRepository.Delta delta = new BillingRollupJdbcRepository.Delta(charge.userId(),
+                    now.toLocalDate(), 1, amount,
+                    type == BillingEvent.SettlementType.PAYMENT ? amount : BigDecimal.ZERO,
+                    type == BillingEvent.SettlementType.BONUS ? amount : BigDecimal.ZERO,
+                    type == BillingEvent.SettlementType.NONE ? amount : BigDecimal.ZERO);
+            deltas.merge(charge.userId(), delta, (a, b) -> new BillingRollupJdbcRepository.Delta(a.userId(), a.day(),
+                    a.eventCount() + b.eventCount(), a.billed().add(b.billed()), a.payment().add(b.payment()),
+                    a.bonus().add(b.bonus()), a.unsettled().add(b.unsettled())));
+        }
+        billingEventJdbcRepository.insertBatch(events, now);
+        billingRollupJdbcRepository.applyAll(new java.util.ArrayList<>(deltas.values()));
+        result.setChargesCreated(events.size());
+        return result;
+    }
+
     /**
      * Get unsettled billing events for a user (what they owe)
      */
@@ -146,28 +231,81 @@ public class BillingService {
         return billingEventRepository.findByUserAndDateRange(user, startDate, endDate);
     }
 
+    /**
+     * All events in the range grouped by user id, with the booking details the
+     * admin report needs already fetched.
+     */
+    @Transactional(readOnly = true)
+    public java.util.Map<Long, List<BillingEvent>> getEventsByUserForDateRange(LocalDateTime startDate,
+            LocalDateTime endDate) {
+        java.util.Map<Long, List<BillingEvent>> byUser = new java.util.HashMap<>();
+        for (BillingEvent event : billingEventRepository.findReportEventsByDateRange(startDate, endDate)) {
+            byUser.computeIfAbsent(event.getUser().getId(), id -> new java.util.ArrayList<>()).add(event);
+        }
+        return byUser;
+    }
+
     /**
      * Mark billing events as settled (after payment)
      */
     public void markAsSettled(Long eventId) {
         BillingEvent event = billingEventRepository.findById(eventId)
                 .orElseThrow(() -> new RuntimeException("Billing event not found"));
-        event.setSettled(true);
-        if (event.getSettlementType() == null || event.getSettlementType() == BillingEvent.SettlementType.NONE) {
-            event.setSettlementType(BillingEvent.SettlementType.PAYMENT);
+        BillingEvent.SettlementType type = event.getSettlementType();
+        settle(event, type == null || type == BillingEvent.SettlementType.NONE
+                ? BillingEvent.SettlementType.PAYMENT
+                : type);
+    }
+
+    /**
+     * Mark multiple billing events as settled with one statement. Each
+     * requested id is reported as SETTLED, ALREADY_SETTLED or NOT_FOUND.
+     */
+    public BulkSettlementResultDTO markAsSettledBulk(List<Long> eventIds) {
+        if (eventIds == null || eventIds.isEmpty()) {
+            return toBulkResult(List.of());
         }
-        billingEventRepository.save(event);
+        List<Long> ids = eventIds.stream().filter(java.util.Objects::nonNull).toList();
+        return toBulkResult(billingSettlementJdbcRepository.settleByIds(ids, LocalDateTime.now(zoneId)));
     }
 
     /**
-     * Mark multiple billing events as settled
+     * Pay a member's unsettled events from their wallet, oldest first, as far
+     * as the balance goes. Used by the settlement sweeper after top-ups and on
+     * its schedule.
      */
-    public void markAsSettledBulk(List<Long> eventIds) {
-        if (eventIds == null || eventIds.isEmpty())
-            return;
-        for (Long id : eventIds) {
-            markAsSettled(id);
+    public BulkSettlementResultDTO settleFromWallet(Long userId) {
+        List<BillingSettlementJdbcRepository.WalletOutcome> paid = billingSettlementJdbcRepository
+                .settleFromWallet(userId, LocalDateTime.now(zoneId));
+        List<BillingSettlementJdbcRepository.Outcome> outcomes = new java.util.ArrayList<>(paid.size());
+        for (BillingSettlementJdbcRepository.WalletOutcome p : paid) {
+            outcomes.add(p.outcome());
+            if (p.transactionId() != null) {
+                auditLogWriter.record("WALLET_SETTLEMENT", "USER", userId, AuditMetadata.builder()
+                        .type("SETTLEMENT")
+                        .amount(p.paid().negate())
+                        .transactionId(p.transactionId())
+                        .reference("billing:" + p.outcome().eventId()));
+            }
         }
+        return toBulkResult(outcomes);
+    }
+
+    /**
+     * Members the scheduled sweep should look at.
+     */
+    @Transactional(readOnly = true)
+    public List<Long> findUserIdsToSweep() {
+        return billingSettlementJdbcRepository.findUserIdsToSweep();
+    }
+
+    /**
+     * Settle every unsettled event of a member dated before {@code before}.
+     */
+    public BulkSettlementResultDTO settleUnsettledForUser(Long userId, LocalDateTime before) {
+        userService.findById(userId);
+        return toBulkResult(billingSettlementJdbcRepository.settleUnsettledForUser(userId, before,
+                LocalDateTime.now(zoneId)));
     }
 
     /**
@@ -193,11 +331,11 @@ public class BillingService {
                 event.setSettled(true);
                 event.setSettlementType(
                         res.bonusConsumed() ? BillingEvent.SettlementType.BONUS : BillingEvent.SettlementType.PAYMENT);
-                return billingEventRepository.save(event);
+                return saveNewEvent(event);
             } else {
                 event.setSettled(false);
                 event.setSettlementType(BillingEvent.SettlementType.NONE);
-                return billingEventRepository.save(event);
+                return saveNewEvent(event);
             }
         } else {
             BillingEvent event = new BillingEvent();
@@ -208,7 +346,7 @@ public class BillingService {
             event.setEventDate(LocalDateTime.now());
             event.setSettled(false);
             event.setSettlementType(BillingEvent.SettlementType.NONE);
-            return billingEventRepository.save(event);
+            return saveNewEvent(event);
         }
     }
 
@@ -218,9 +356,7 @@ public class BillingService {
     public void settleAsPayment(Long eventId) {
         BillingEvent event = billingEventRepository.findById(eventId)
                 .orElseThrow(() -> new RuntimeException("Billing event not found"));
-        event.setSettled(true);
-        event.setSettlementType(BillingEvent.SettlementType.PAYMENT);
-        billingEventRepository.save(event);
+        settle(event, BillingEvent.SettlementType.PAYMENT);
     }
 
     /**
@@ -244,8 +380,118 @@ public class BillingService {
         // Persist user bonus day change
         userService.createUser(user);
 
+        settle(event, BillingEvent.SettlementType.BONUS);
+    }
+
+    /**
+     * Billing totals per user over [from, to], read from the daily rollups.
+     */
+    @Transactional(readOnly = true)
+    public List<com.gym.booking.dto.BillingSummaryDTO> getSummaryByUser(java.time.LocalDate from,
+            java.time.LocalDate to, Long userId) {
+        return billingRollupJdbcRepository.sumByUser(from, to, userId);
+    }
+
+    /**
+     * Billing totals per day over [from, to], read from the daily rollups.
+     */
+    @Transactional(readOnly = true)
+    public List<com.gym.booking.dto.BillingSummaryDTO> getSummaryByDay(java.time.LocalDate from,
+            java.time.LocalDate to, Long userId) {
+        return billingRollupJdbcRepository.sumByDay(from, to, userId);
+    }
+
+    /**
+     * Recompute billing_daily_rollups from billing_events, e.g. after a manual
+     * data fix. Returns the number of rollup rows written.
+     */
+    public int rebuildRollups() {
+        return billingRollupJdbcRepository.rebuild();
+    }
+
+    // Every new event goes through here so the daily rollup stays in step
+    private BillingEvent saveNewEvent(BillingEvent event) {
+        BillingEvent saved = billingEventRepository.save(event);
+        BigDecimal amount = saved.getAmount();
+        billingRollupJdbcRepository.apply(new BillingRollupJdbcRepository.Delta(saved.getUser().getId(),
+                saved.getEventDate().toLocalDate(), 1, amount,
+                bucketAmount(saved, BillingEvent.SettlementType.PAYMENT),
+                bucketAmount(saved, BillingEvent.SettlementType.BONUS),
+                bucketAmount(saved, BillingEvent.SettlementType.NONE)));
+        return saved;
+    }
+
+    // Mark an event settled and move its amount between rollup buckets
+    private void settle(BillingEvent event, BillingEvent.SettlementType type) {
+        BigDecimal paymentBefore = bucketAmount(event, BillingEvent.SettlementType.PAYMENT);
+        BigDecimal bonusBefore = bucketAmount(event, BillingEvent.SettlementType.BONUS);
+        BigDecimal unsettledBefore = bucketAmount(event, BillingEvent.SettlementType.NONE);
         event.setSettled(true);
-        event.setSettlementType(BillingEvent.SettlementType.BONUS);
+        event.setSettlementType(type);
         billingEventRepository.save(event);
+        auditLogWriter.record("BILLING_SETTLED", "BILLING_EVENT", event.getId(), AuditMetadata.builder()
+                .userId(event.getUser().getId())
+                .bookingId(event.getBooking() != null ? event.getBooking().getId() : null)
+                .amount(event.getAmount())
+                .settlementType(type.name()));
+        BillingRollupJdbcRepository.Delta delta = new BillingRollupJdbcRepository.Delta(event.getUser().getId(),
+                event.getEventDate().toLocalDate(), 0, BigDecimal.ZERO,
+                bucketAmount(event, BillingEvent.SettlementType.PAYMENT).subtract(paymentBefore),
+                bucketAmount(event, BillingEvent.SettlementType.BONUS).subtract(bonusBefore),
+                bucketAmount(event, BillingEvent.SettlementType.NONE).subtract(unsettledBefore));
+        if (delta.payment().signum() != 0 || delta.bonus().signum() != 0 || delta.unsettled().signum() != 0) {
+            billingRollupJdbcRepository.apply(delta);
+        }
+    }
+
+    // Summarize bulk outcomes and move the newly settled amounts out of the
+    // unsettled rollup bucket, one delta per user and day
+    private BulkSettlementResultDTO toBulkResult(List<BillingSettlementJdbcRepository.Outcome> outcomes) {
+        BulkSettlementResultDTO result = new BulkSettlementResultDTO();
+        List<BulkSettlementResultDTO.EventOutcome> events = new java.util.ArrayList<>();
+        java.util.Map<String, BillingRollupJdbcRepository.Delta> deltas = new java.util.LinkedHashMap<>();
+        for (BillingSettlementJdbcRepository.Outcome outcome : outcomes) {
+            BulkSettlementResultDTO.Outcome status = BulkSettlementResultDTO.Outcome.valueOf(outcome.status());
+            events.add(new BulkSettlementResultDTO.EventOutcome(outcome.eventId(), status));
+            switch (status) {
+                case SETTLED -> result.setSettled(result.getSettled() + 1);
+                case ALREADY_SETTLED -> result.setAlreadySettled(result.getAlreadySettled() + 1);
+                case NOT_FOUND -> result.setNotFound(result.getNotFound() + 1);
+            }
+            if (status != BulkSettlementResultDTO.Outcome.SETTLED) {
+                continue;
+            }
+            auditLogWriter.record("BILLING_SETTLED", "BILLING_EVENT", outcome.eventId(), AuditMetadata.builder()
+                    .userId(outcome.userId())
+                    .amount(outcome.amount())
+                    .settlementType(outcome.settlementType())
+                    .bulk(true));
+            boolean bonus = BillingEvent.SettlementType.BONUS.name().equals(outcome.settlementType());
+            BigDecimal amount = outcome.amount() != null ? outcome.amount() : BigDecimal.ZERO;
+            java.time.LocalDate day = outcome.eventDate().toLocalDate();
+            BillingRollupJdbcRepository.Delta delta = new BillingRollupJdbcRepository.Delta(outcome.userId(), day, 0,
+                    BigDecimal.ZERO, bonus ? BigDecimal.ZERO : amount, bonus ? amount : BigDecimal.ZERO,
+                    amount.negate());
+            deltas.merge(outcome.userId() + ":" + day, delta, (a, b) -> new BillingRollupJdbcRepository.Delta(
+                    a.userId(), a.day(), 0, BigDecimal.ZERO, a.payment().add(b.payment()), a.bonus().add(b.bonus()),
+                    a.unsettled().add(b.unsettled())));
+        }
+        billingRollupJdbcRepository.applyAll(new java.util.ArrayList<>(deltas.values()));
+        result.setEvents(events);
+        return result;
+    }
+
+    // The event's amount if it currently falls in the given rollup bucket
+    // (NONE = unsettled), zero otherwise
+    private static BigDecimal bucketAmount(BillingEvent event, BillingEvent.SettlementType bucket) {
+        BillingEvent.SettlementType current;
+        if (!event.isSettled()) {
+            current = BillingEvent.SettlementType.NONE;
+        } else {
+            current = event.getSettlementType() == BillingEvent.SettlementType.BONUS
+                    ? BillingEvent.SettlementType.BONUS
+                    : BillingEvent.SettlementType.PAYMENT;
+        }
+        return current == bucket && event.getAmount() != null ? event.getAmount() : BigDecimal.ZERO;
     }
 }
@@ -0,0 +1,58 @@
+package com.gym.booking.service;
+
+import com.gym.booking.exception.ClassFullException;
+import com.gym.booking.model.Booking;
+import org.springframework.stereotype.Service;
+
+import java.util.function.Supplier;
+
+/**
+ * Runs a booking request through the SeatAdmissionGate before handing it to
+ * BookingService.createBooking. Deliberately not transactional: a rejection
+ * by the gate must not open a session or borrow a connection.
+ */
+@Service
+public class BookingAdmissionService {
+    private final BookingService bookingService;
+    private final SeatAdmissionGate seatAdmissionGate;
+
+    public BookingAdmissionService(BookingService bookingService, SeatAdmissionGate seatAdmissionGate) {
+        this.bookingService = bookingService;
+        this.seatAdmissionGate = seatAdmissionGate;
+    }
+
+    /**
+     * Admit a booking request. The user id is resolved lazily so a request for
+     * a known-full class is rejected before any user lookup.
+     */
+    public Booking admit(Long classInstanceId, Supplier<Long> userIdResolver) {
+        boolean admitted = seatAdmissionGate.tryAcquire(classInstanceId);
+        if (!admitted) {
+            if (!bookingService.isWaitlistEnabled()) {
+                throw new ClassFullException();
+            }
+            // The gate can be wrongly low (a reconcile overwrote a release, or
+            // another node freed the seat). Nobody is waitlisted on its word
+            // alone: the seat counter is tried once, and a seat it still had
+            // means the gate's count is stale
+            Booking booking = bookingService.createBooking(userIdResolver.get(), classInstanceId);
+            if (booking.getStatus() == Booking.BookingStatus.BOOKED) {
+                seatAdmissionGate.invalidate(classInstanceId);
+            }
+            return booking;
+        }
+        try {
+            Booking booking = bookingService.createBooking(userIdResolver.get(), classInstanceId);
+            if (booking.getStatus() == Booking.BookingStatus.WAITLISTED) {
+                seatAdmissionGate.markFull(classInstanceId);
+            }
+            return booking;
+        } catch (ClassFullException e) {
+            seatAdmissionGate.markFull(classInstanceId);
+            throw e;
+        } catch (RuntimeException e) {
+            seatAdmissionGate.release(classInstanceId, 1);
+            throw e;
+        }
+    }
+}
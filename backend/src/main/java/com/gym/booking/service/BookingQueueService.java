@@ -0,0 +1,297 @@
+package com.gym.booking.service;
+
+import com.gym.booking.exception.BookingException;
+import com.gym.booking.model.Booking;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Queued booking mode for flash openings.
+ *
+ * A request is turned into a ticket and returned immediately. Each class
+ * instance has a single-writer lane that processes its tickets in arrival
+ * order on a virtual thread, and a global semaphore caps how many lanes talk
+ * to the database at once, so connection use stays bounded however many
+ * clients pile up. A lane gives its permit back after a bounded batch of
+ * tickets and queues up again behind the waiting lanes (the semaphore is fair),
+ * so one hot class cannot starve the others. Clients poll (or long-poll) the
+ * ticket for the outcome.
+ *
+ * Besides explicit opt-in, a class switches to queued mode automatically when
+ * its booking attempt rate crosses the configured threshold, and stays queued
+ * for a cooldown period to avoid flapping.
+ */
+@Service
+public class BookingQueueService {
+    private static final Logger log = LoggerFactory.getLogger(BookingQueueService.class);
+
+    public enum TicketStatus {
+        PENDING,
+        BOOKED,
+        WAITLISTED,
+        REJECTED
+    }
+
+    public static final class BookingTicket {
+        private final String id = UUID.randomUUID().toString();
+        private final Long classInstanceId;
+        private final Long userId;
+        private final String owner;
+        private final Instant createdAt = Instant.now();
+        private final CompletableFuture<BookingTicket> outcome = new CompletableFuture<>();
+        private volatile TicketStatus status = TicketStatus.PENDING;
+        private volatile Long bookingId;
+        private volatile String message;
+        private volatile Instant completedAt;
+
+        BookingTicket(Long classInstanceId, Long userId, String owner) {
+            this.classInstanceId = classInstanceId;
+            this.userId = userId;
+            this.owner = owner;
+        }
+
+        void complete(TicketStatus status, Long bookingId, String message) {
+            this.status = status;
+            this.bookingId = bookingId;
+            this.message = message;
+            this.completedAt = Instant.now();
+            outcome.complete(this);
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public Long getClassInstanceId() {
+            return classInstanceId;
+        }
+
+        public Long getUserId() {
+            return userId;
+        }
+
+        public String getOwner() {
+            return owner;
+        }
+
+        public Instant getCreatedAt() {
+            return createdAt;
+        }
+
+        public TicketStatus getStatus() {
+            return status;
+        }
+
+        public Long getBookingId() {
+            return bookingId;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        public Instant getCompletedAt() {
+            return completedAt;
+        }
+
+        public boolean isDone() {
+            return status != TicketStatus.PENDING;
+        }
+    }
+
+    private static final class Lane {
+        final ConcurrentLinkedQueue<BookingTicket> pending = new ConcurrentLinkedQueue<>();
+        final AtomicInteger size = new AtomicInteger();
+        final AtomicBoolean draining = new AtomicBoolean();
+    }
+
+    // Attempts counted in one-second buckets; queuedUntil keeps the mode on
+    // for the cooldown once the threshold trips
+    private static final class AttemptRate {
+        final AtomicLong windowSecond = new AtomicLong();
+        final AtomicInteger count = new AtomicInteger();
+        volatile long queuedUntilMillis;
+    }
+
+    private final BookingAdmissionService bookingAdmissionService;
+    private final int autoThresholdPerSecond;
+    private final long cooldownMillis;
+    private final int maxPendingPerClass;
+    private final int drainBatchSize;
+    private final Duration ticketTtl;
+    private final Semaphore writers;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final ConcurrentHashMap<Long, Lane> lanes = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, AttemptRate> rates = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, BookingTicket> tickets = new ConcurrentHashMap<>();
+
+    public BookingQueueService(BookingAdmissionService bookingAdmissionService,
+            @Value("${app.booking.queue.auto-threshold-per-second:50}") int autoThresholdPerSecond,
+            @Value("${app.booking.queue.cooldown-seconds:120}") long cooldownSeconds,
+            @Value("${app.booking.queue.max-pending-per-class:5000}") int maxPendingPerClass,
+            @Value("${app.booking.queue.max-concurrent-writers:4}") int maxConcurrentWriters,
+            @Value("${app.booking.queue.ticket-ttl-seconds:600}") long ticketTtlSeconds,
+            @Value("${app.booking.queue.drain-batch-size:32}") int drainBatchSize) {
+        this.bookingAdmissionService = bookingAdmissionService;
+        this.autoThresholdPerSecond = autoThresholdPerSecond;
+        this.cooldownMillis = cooldownSeconds * 1000;
+        this.maxPendingPerClass = maxPendingPerClass;
+        this.drainBatchSize = Math.max(1, drainBatchSize);
+        this.writers = new Semaphore(Math.max(1, maxConcurrentWriters), true);
+        this.ticketTtl = Duration.ofSeconds(ticketTtlSeconds);
+    }
+
+    /**
+     * Record a booking attempt for the class and report whether it should be
+     * served in queued mode. Always false when auto mode is disabled (threshold
+     * of 0).
+     */
+    public boolean recordAttemptAndCheckQueued(Long classInstanceId) {
+        if (autoThresholdPerSecond <= 0 || classInstanceId == null) {
+            return false;
+        }
+        AttemptRate rate = rates.computeIfAbsent(classInstanceId, id -> new AttemptRate());
+        long nowMillis = System.currentTimeMillis();
+        long second = nowMillis / 1000;
+        long window = rate.windowSecond.get();
+        if (window != second && rate.windowSecond.compareAndSet(window, second)) {
+            rate.count.set(0);
+        }
+        if (rate.count.incrementAndGet() > autoThresholdPerSecond) {
+            if (rate.queuedUntilMillis < nowMillis) {
+                log.info("Switching class {} to queued booking mode ({} attempts/s)", classInstanceId,
+                        autoThresholdPerSecond);
+            }
+            rate.queuedUntilMillis = nowMillis + cooldownMillis;
+        }
+        return rate.queuedUntilMillis >= nowMillis;
+    }
+
+    /**
+     * Enqueue a booking request and return its ticket without waiting for the
+     * outcome.
+     */
+    public BookingTicket submit(Long userId, Long classInstanceId, String owner) {
+        if (classInstanceId == null) {
+            throw new BookingException("Class instance id is required");
+        }
+        // Reserve the slot inside compute so eviction never drops a lane that is
+        // about to receive a ticket
+        Lane lane = lanes.compute(classInstanceId, (id, existing) -> {
+            Lane l = existing != null ? existing : new Lane();
+            l.size.incrementAndGet();
+            return l;
+        });
+        if (lane.size.get() > maxPendingPerClass) {
+            lane.size.decrementAndGet();
+            throw new BookingException("Booking queue for this class is full, please retry shortly");
+        }
+        BookingTicket ticket = new BookingTicket(classInstanceId, userId, owner);
+        tickets.put(ticket.getId(), ticket);
+        lane.pending.add(ticket);
+        scheduleDrain(lane);
+        return ticket;
+    }
+
+    public Optional<BookingTicket> findTicket(String ticketId) {
+        return Optional.ofNullable(ticketId).map(tickets::get);
+    }
+
+    /**
+     * Future that completes with the ticket once processed, or with the
+     * still-pending ticket after {@code wait} elapses.
+     */
+    public CompletableFuture<BookingTicket> awaitTicket(BookingTicket ticket, Duration wait) {
+        if (ticket.isDone() || wait.isZero() || wait.isNegative()) {
+            return CompletableFuture.completedFuture(ticket);
+        }
+        return ticket.outcome.copy().completeOnTimeout(ticket, wait.toMillis(),
+                java.util.concurrent.TimeUnit.MILLISECONDS);
+    }
+
+    private void scheduleDrain(Lane lane) {
+        if (lane.draining.compareAndSet(false, true)) {
+            executor.execute(() -> drain(lane));
+        }
+    }
+
+    private void drain(Lane lane) {
+        try {
+            writers.acquire();
+            try {
+                BookingTicket ticket;
+                int processed = 0;
+                while (processed < drainBatchSize && (ticket = lane.pending.poll()) != null) {
+                    lane.size.decrementAndGet();
+                    process(ticket);
+                    processed++;
+                }
+            } finally {
+                writers.release();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            lane.draining.set(false);
+            // Tickets left over from a full batch, or one that arrived between
+            // the last poll and the reset, go back through the semaphore
+            if (!lane.pending.isEmpty() && !executor.isShutdown()) {
+                scheduleDrain(lane);
+            }
+        }
+    }
+
+    private void process(BookingTicket ticket) {
+        try {
+            Booking booking = bookingAdmissionService.admit(ticket.getClassInstanceId(), ticket::getUserId);
+            TicketStatus status = booking.getStatus() == Booking.BookingStatus.WAITLISTED
+                    ? TicketStatus.WAITLISTED
+                    : TicketStatus.BOOKED;
+            ticket.complete(status, booking.getId(), null);
+        } catch (RuntimeException e) {
+            ticket.complete(TicketStatus.REJECTED, null, e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.booking.queue.cleanup-interval-ms:60000}")
+    public void evictExpired() {
+        Instant cutoff = Instant.now().minus(ticketTtl);
+        tickets.values().removeIf(t -> t.isDone() && t.getCompletedAt().isBefore(cutoff));
+        for (Long classInstanceId : lanes.keySet()) {
+            lanes.computeIfPresent(classInstanceId,
+                    (id, lane) -> lane.size.get() == 0 && !lane.draining.get() ? null : lane);
+        }
+        long nowMillis = System.currentTimeMillis();
+        rates.entrySet().removeIf(e -> e.getValue().queuedUntilMillis < nowMillis
+                && e.getValue().windowSecond.get() < nowMillis / 1000 - 60);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+        for (Lane lane : lanes.values()) {
+            BookingTicket ticket;
+            while ((ticket = lane.pending.poll()) != null) {
+                ticket.complete(TicketStatus.REJECTED, null, "Service is shutting down, please retry");
+            }
+        }
+    }
+}
@@ -1,11 +1,14 @@
 package com.gym.booking.service;
 
+import com.gym.booking.dto.RosterCompletionResultDTO;
 import com.gym.booking.model.Booking;
 import com.gym.booking.model.GymClass;
 import com.gym.booking.model.User;
+import com.gym.booking.repository.BookingJdbcRepository;
 import com.gym.booking.repository.BookingRepository;
 import com.gym.booking.exception.ResourceNotFoundException;
 import com.gym.booking.exception.BookingException;
+import com.gym.booking.exception.ClassFullException;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -21,41 +24,153 @@ public class BookingService {
     private final GymClassService gymClassService;
     private final UserService userService;
     private final BillingService billingService;
+    private final SeatAdmissionGate seatAdmissionGate;
+    private final AuditLogWriter auditLogWriter;
+    private final BookingJdbcRepository bookingJdbcRepository;
 
     private final ZoneId zoneId;
+    private final boolean waitlistEnabled;
 
     public BookingService(BookingRepository bookingRepository,
             GymClassService gymClassService,
             UserService userService,
             @Lazy BillingService billingService,
-            @org.springframework.beans.factory.annotation.Value("${APP_TIMEZONE:Europe/Athens}") String appTimezone) {
+            SeatAdmissionGate seatAdmissionGate,
+            AuditLogWriter auditLogWriter,
+            BookingJdbcRepository bookingJdbcRepository,
+            @org.springframework.beans.factory.annotation.Value("${APP_TIMEZONE:Europe/Athens}") String appTimezone,
+            @org.springframework.beans.factory.annotation.Value("${app.booking.waitlist.enabled:true}") boolean waitlistEnabled) {
         this.bookingRepository = bookingRepository;
         this.gymClassService = gymClassService;
         this.userService = userService;
         this.billingService = billingService;
+        this.seatAdmissionGate = seatAdmissionGate;
+        this.auditLogWriter = auditLogWriter;
+        this.bookingJdbcRepository = bookingJdbcRepository;
         this.zoneId = ZoneId.of(appTimezone);
+        this.waitlistEnabled = waitlistEnabled;
+    }
+
+    public boolean isWaitlistEnabled() {
+        return waitlistEnabled;
     }
 
     public Booking createBooking(Long userId, Long classInstanceId) {
+        User user = requireUser(userId);
+        GymClass classInstance = requireBookableClass(classInstanceId);
+        validateBooking(user, classInstance);
+
+        // Single conditional UPDATE on the class row; the row lock serializes
+        // concurrent admissions so capacity can never be exceeded
+        if (!gymClassService.tryReserveSeat(classInstanceId)) {
+            if (!waitlistEnabled) {
+                throw new ClassFullException();
+            }
+            return joinWaitlist(user, classInstance);
+        }
+
+        Booking booking = new Booking();
+        booking.setUser(user);
+        booking.setClassInstance(classInstance);
+        booking.setStatus(Booking.BookingStatus.BOOKED);
+        Booking saved = bookingRepository.save(booking);
+        auditBooking("BOOKING_CREATED", saved);
+        return saved;
+    }
+
+    private User requireUser(Long userId) {
         if (userId == null) {
             throw new BookingException("User id is required");
         }
+        return userService.findById(userId);
+    }
+
+    private GymClass requireBookableClass(Long classInstanceId) {
         if (classInstanceId == null) {
             throw new BookingException("Class instance id is required");
         }
-        User user = userService.findById(userId);
         GymClass classInstance = gymClassService.findById(classInstanceId);
+        if (classInstance.isLotteryOpen()) {
+            throw new BookingException("Seats for this class are allocated by lottery; enter the lottery instead");
+        }
+        return classInstance;
+    }
 
-        validateBooking(user, classInstance);
-
+    private Booking joinWaitlist(User user, GymClass classInstance) {
         Booking booking = new Booking();
         booking.setUser(user);
         booking.setClassInstance(classInstance);
-        booking.setStatus(Booking.BookingStatus.BOOKED);
-        return bookingRepository.save(booking);
+        booking.setStatus(Booking.BookingStatus.WAITLISTED);
+        booking.setWaitlistPosition(bookingRepository.nextWaitlistPosition());
+        Booking saved = bookingRepository.save(booking);
+        auditBooking("BOOKING_WAITLISTED", saved);
+        return saved;
+    }
+
+    private void auditBooking(String action, Booking booking) {
+        auditBooking(action, booking.getId(), booking.getUser().getId(), booking.getClassInstance().getId(),
+                booking.getStatus());
+    }
+
+    // Also used by LotteryService for the bookings a draw inserts
+    void auditBooking(String action, Long bookingId, Long userId, Long classInstanceId,
+            Booking.BookingStatus status) {
+        auditLogWriter.record(action, "BOOKING", bookingId, AuditMetadata.builder()
+                .userId(userId)
+                .bookingId(bookingId)
+                .classInstanceId(classInstanceId)
+                .status(status));
+    }
+
+    /**
+     * Promote up to {@code seats} waitlisted bookings (FIFO) into freed seats.
+     * Each promotion is one indexed head lookup plus one conditional seat
+     * UPDATE. Members who can no longer pay for the class are passed over and
+     * keep their place. Returns the number of bookings promoted.
+     */
+    public int promoteFromWaitlist(Long classInstanceId, int seats) {
+        if (!waitlistEnabled || classInstanceId == null) {
+            return 0;
+        }
+        int promoted = 0;
+        long afterPosition = 0L;
+        while (promoted < seats) {
+            java.util.Optional<Booking> head = bookingRepository.lockWaitlistHead(classInstanceId, afterPosition);
+            if (head.isEmpty()) {
+                break;
+            }
+            Booking booking = head.get();
+            afterPosition = booking.getWaitlistPosition();
+            if (!hasFunds(booking.getUser(), booking.getClassInstance())) {
+                continue;
+            }
+            if (!gymClassService.tryReserveSeat(classInstanceId)) {
+                break;
+            }
+            booking.setStatus(Booking.BookingStatus.BOOKED);
+            booking.setWaitlistPosition(null);
+            bookingRepository.save(booking);
+            auditBooking("BOOKING_PROMOTED", booking);
+            promoted++;
+        }
+        return promoted;
     }
 
-    private void validateBooking(User user, GymClass classInstance) {
+    /**
+     * 1-based place of a waitlisted booking in its class queue.
+     */
+    public Integer getWaitlistRank(Booking booking) {
+        if (booking == null || booking.getStatus() != Booking.BookingStatus.WAITLISTED
+                || booking.getWaitlistPosition() == null) {
+            return null;
+        }
+        long ahead = bookingRepository.countByClassInstance_IdAndStatusAndWaitlistPositionLessThan(
+                booking.getClassInstance().getId(), Booking.BookingStatus.WAITLISTED, booking.getWaitlistPosition());
+        return (int) ahead + 1;
+    }
+
+    // Also used by LotteryService when a member enters a draw
+    void validateBooking(User user, GymClass classInstance) {
         // Disallow self-booking for staff (ADMIN/TRAINER) – they must book on behalf
         // of members instead
         if (user.getRole() == User.UserRole.TRAINER || user.getRole() == User.UserRole.ADMIN) {
@@ -72,20 +187,23 @@ public class BookingService {
             throw new BookingException("Cannot book past classes");
         }
 
-        long confirmedBookings = bookingRepository.countByClassInstanceAndStatus(
-                classInstance, Booking.BookingStatus.BOOKED);
-        if (confirmedBookings >= classInstance.getCapacity()) {
-            throw new BookingException("Class is fully booked");
-        }
-
-        List<Booking> existingBookings = bookingRepository.findByClassInstanceAndUserAndStatus(
-                classInstance, user, Booking.BookingStatus.BOOKED);
-        if (!existingBookings.isEmpty()) {
+        if (bookingRepository.existsByClassInstanceAndUserAndStatusIn(classInstance, user,
+                java.util.EnumSet.of(Booking.BookingStatus.BOOKED, Booking.BookingStatus.WAITLISTED))) {
             throw new BookingException("User already has a booking for this class");
         }
 
         // Enforce wallet/bonus validation: user must have either sufficient wallet
         // balance for the class kind, or at least 1 bonus day to cover the class.
+        if (!hasFunds(user, classInstance)) {
+            java.math.BigDecimal chargeAmount = billingService.getChargeAmountForClass(user, classInstance);
+            throw new BookingException("Insufficient funds: wallet="
+                    + java.util.Optional.ofNullable(user.getWalletBalance()).orElse(java.math.BigDecimal.ZERO)
+                    + " bonusDays=" + java.util.Optional.ofNullable(user.getBonusDays()).orElse(0)
+                    + " required=" + chargeAmount + ". Please top-up wallet or use a bonus day.");
+        }
+    }
+
+    private boolean hasFunds(User user, GymClass classInstance) {
         java.math.BigDecimal chargeAmount = billingService.getChargeAmountForClass(user, classInstance);
         java.math.BigDecimal wallet = java.util.Optional.ofNullable(user.getWalletBalance())
                 .orElse(java.math.BigDecimal.ZERO);
@@ -94,10 +212,7 @@ public class BookingService {
         boolean canPayWithWallet = wallet.compareTo(chargeAmount) >= 0;
         boolean canUseBonus = bonus > 0;
 
-        if (chargeAmount.compareTo(java.math.BigDecimal.ZERO) > 0 && !canPayWithWallet && !canUseBonus) {
-            throw new BookingException("Insufficient funds: wallet=" + wallet + " bonusDays=" + bonus +
-                    " required=" + chargeAmount + ". Please top-up wallet or use a bonus day.");
-        }
+        return chargeAmount.compareTo(java.math.BigDecimal.ZERO) <= 0 || canPayWithWallet || canUseBonus;
     }
 
     public void cancelBooking(Long bookingId) {
@@ -106,9 +221,24 @@ public class BookingService {
         if (startZ.isBefore(ZonedDateTime.now(zoneId))) {
             throw new BookingException("Cannot cancel past bookings");
         }
+        Booking.BookingStatus previous = booking.getStatus();
         booking.setStatus(Booking.BookingStatus.CANCELLED_BY_USER);
         booking.setCancelledAt(LocalDateTime.now(zoneId));
+        booking.setWaitlistPosition(null);
         bookingRepository.save(booking);
+        auditBooking("BOOKING_CANCELLED", booking);
+
+        // Leaving the waitlist never costs anything
+        if (previous == Booking.BookingStatus.WAITLISTED) {
+            return;
+        }
+        if (previous == Booking.BookingStatus.BOOKED) {
+            Long classInstanceId = booking.getClassInstance().getId();
+            gymClassService.releaseSeats(classInstanceId, 1);
+            // Hand the freed seat to the head of the waitlist in this transaction
+            int promoted = promoteFromWaitlist(classInstanceId, 1);
+            seatAdmissionGate.releaseAfterCommit(classInstanceId, 1 - promoted);
+        }
 
         // Create billing event if same-day cancellation (user-initiated only)
         billingService.createCancellationCharge(booking);
@@ -116,33 +246,95 @@ public class BookingService {
 
     public void markCompleted(Long bookingId) {
         Booking booking = findById(bookingId);
+        // Only a seated booking can be attended (and billed)
+        if (booking.getStatus() != Booking.BookingStatus.BOOKED) {
+            throw new BookingException("Only booked bookings can be completed; this one is " + booking.getStatus());
+        }
         booking.setStatus(Booking.BookingStatus.COMPLETED);
         booking.setAttendedAt(LocalDateTime.now());
         bookingRepository.save(booking);
+        auditBooking("BOOKING_COMPLETED", booking);
+        // booked_count tracks BOOKED rows only, matching the public count endpoint
+        gymClassService.releaseSeats(booking.getClassInstance().getId(), 1);
         // Attempt to create and auto-settle billing for completed booking
         billingService.createCompletionCharge(booking);
     }
 
-    public List<Booking> findByUser(Long userId) {
+    /**
+     * Close a class roster in one go: the attended bookings become COMPLETED
+     * and the no-shows NO_SHOW in a single statement, then the whole roster is
+     * billed in bulk. Only BOOKED bookings of the class change; any other
+     * requested id is reported back as skipped.
+     */
+    public RosterCompletionResultDTO completeRoster(Long classInstanceId, java.util.Collection<Long> attended,
+            java.util.Collection<Long> noShows) {
+        java.util.Set<Long> attendedIds = attended != null ? new java.util.LinkedHashSet<>(attended)
+                : new java.util.LinkedHashSet<>();
+        java.util.Set<Long> noShowIds = noShows != null ? new java.util.LinkedHashSet<>(noShows)
+                : new java.util.LinkedHashSet<>();
+        attendedIds.remove(null);
+        noShowIds.remove(null);
+        if (attendedIds.isEmpty() && noShowIds.isEmpty()) {
+            throw new BookingException("No bookings given to complete");
+        }
+        if (!java.util.Collections.disjoint(attendedIds, noShowIds)) {
+            throw new BookingException("A booking cannot be both attended and a no-show");
+        }
+        GymClass gymClass = gymClassService.findById(classInstanceId);
+        List<BookingJdbcRepository.ChangedBooking> changed = bookingJdbcRepository.completeRoster(classInstanceId,
+                attendedIds, noShowIds, LocalDateTime.now(zoneId));
+
+        int completed = 0;
+        java.util.Set<Long> skipped = new java.util.LinkedHashSet<>(attendedIds);
+        skipped.addAll(noShowIds);
+        for (BookingJdbcRepository.ChangedBooking booking : changed) {
+            Booking.BookingStatus status = Booking.BookingStatus.valueOf(booking.status());
+            if (status == Booking.BookingStatus.COMPLETED) {
+                completed++;
+            }
+            skipped.remove(booking.bookingId());
+            auditLogWriter.record(status == Booking.BookingStatus.COMPLETED ? "BOOKING_COMPLETED" : "BOOKING_NO_SHOW",
+                    "BOOKING", booking.bookingId(), AuditMetadata.builder()
+                            .userId(booking.userId())
+                            .bookingId(booking.bookingId())
+                            .classInstanceId(classInstanceId)
+                            .status(status)
+                            .bulk(true));
+        }
+        // Every changed row held a seat (only BOOKED rows are touched)
+        gymClassService.releaseSeats(classInstanceId, changed.size());
+
+        RosterCompletionResultDTO result = billingService.chargeRoster(gymClass, changed);
+        result.setClassInstanceId(classInstanceId);
+        result.setCompleted(completed);
+        result.setNoShows(changed.size() - completed);
+        result.setSkippedBookingIds(new java.util.ArrayList<>(skipped));
+        return result;
+    }
+
+    // Listing reads for the controllers, projected straight into DTOs
+    @Transactional(readOnly = true)
+    public List<com.gym.booking.dto.BookingDTO> findDTOsByUser(Long userId) {
         if (userId == null) {
             return java.util.Collections.emptyList();
         }
-        User user = userService.findById(userId);
-        return bookingRepository.findByUser(user);
+        userService.findById(userId);
+        return bookingRepository.findDTOsByUserId(userId, Booking.BookingStatus.WAITLISTED);
     }
 
-    public List<Booking> findByClassInstance(Long classInstanceId) {
+    @Transactional(readOnly = true)
+    public List<com.gym.booking.dto.BookingDTO> findDTOsByClassInstance(Long classInstanceId) {
         if (classInstanceId == null) {
             return java.util.Collections.emptyList();
         }
-        GymClass classInstance = gymClassService.findById(classInstanceId);
-        return bookingRepository.findByClassInstance(classInstance);
+        gymClassService.findById(classInstanceId);
+        return bookingRepository.findDTOsByClassInstanceId(classInstanceId, Booking.BookingStatus.WAITLISTED);
     }
 
     /**
      * Admin/gym-initiated cancellation of a class instance.
      *
-     * Marks all active bookings for the class as CANCELLED_BY_GYM without
+     * Marks all active and waitlisted bookings for the class as CANCELLED_BY_GYM without
      * creating any billing events. This is used when an admin cancels or
      * deletes a class; members must never be charged for these cancellations.
      */
@@ -150,35 +342,41 @@ public class BookingService {
         if (classInstanceId == null) {
             return;
         }
-        GymClass classInstance = gymClassService.findById(classInstanceId);
-        List<Booking> bookings = bookingRepository.findByClassInstance(classInstance);
-        LocalDateTime now = LocalDateTime.now();
-
-        for (Booking booking : bookings) {
-            if (booking.getStatus() == Booking.BookingStatus.BOOKED) {
-                booking.setStatus(Booking.BookingStatus.CANCELLED_BY_GYM);
-                booking.setCancelledAt(now);
-                bookingRepository.save(booking);
-            }
+        cancelBookingsByGymForClasses(List.of(classInstanceId));
+    }
+
+    /**
+     * {@link #cancelBookingsByGymForClass} for many classes in one statement
+     * (seats included). Returns the cancelled bookings.
+     */
+    public List<BookingJdbcRepository.CancelledBooking> cancelBookingsByGymForClasses(
+            java.util.Collection<Long> classInstanceIds) {
+        List<BookingJdbcRepository.CancelledBooking> cancelled = bookingJdbcRepository.cancelByGym(classInstanceIds,
+                LocalDateTime.now(zoneId));
+        for (Long classInstanceId : classInstanceIds) {
+            seatAdmissionGate.invalidate(classInstanceId);
         }
+        return cancelled;
     }
 
     /**
-     * Count all active (BOOKED) bookings for a given class instance.
+     * Count all active (BOOKED or WAITLISTED) bookings for a given class instance.
      */
     public long countActiveBookingsForClass(GymClass classInstance) {
         if (classInstance == null) {
             return 0L;
         }
-        return bookingRepository.countByClassInstanceAndStatus(classInstance, Booking.BookingStatus.BOOKED);
+        return bookingRepository.countByClassInstanceAndStatusIn(classInstance,
+                java.util.EnumSet.of(Booking.BookingStatus.BOOKED, Booking.BookingStatus.WAITLISTED));
     }
 
     public long countBookedByClassInstance(Long classInstanceId) {
         if (classInstanceId == null) {
             return 0L;
         }
+        // Served from the denormalized counter instead of count(*) over bookings
         GymClass classInstance = gymClassService.findById(classInstanceId);
-        return bookingRepository.countByClassInstanceAndStatus(classInstance, Booking.BookingStatus.BOOKED);
+        return classInstance.getBookedCount() != null ? classInstance.getBookedCount() : 0L;
     }
 
     public Booking findById(Long id) {
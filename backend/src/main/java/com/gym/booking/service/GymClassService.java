@@ -1,27 +1,38 @@
 package com.gym.booking.service;
 
+import com.gym.booking.dto.FacilityClosureResultDTO;
 import com.gym.booking.exception.ResourceNotFoundException;
 import com.gym.booking.model.GymClass;
 import com.gym.booking.model.User;
+import com.gym.booking.repository.BookingJdbcRepository;
 import com.gym.booking.repository.GymClassRepository;
+import com.gym.booking.repository.LotteryEntryRepository;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.lang.NonNull;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Service
 @Transactional
 public class GymClassService {
     private final GymClassRepository gymClassRepository;
+    private final LotteryEntryRepository lotteryEntryRepository;
     private final UserService userService;
     private final BookingService bookingService;
+    private final SeatAdmissionGate seatAdmissionGate;
+    private final java.time.ZoneId zoneId;
 
-    public GymClassService(GymClassRepository gymClassRepository, UserService userService,
-        @Lazy BookingService bookingService) {
+    public GymClassService(GymClassRepository gymClassRepository, LotteryEntryRepository lotteryEntryRepository,
+        UserService userService, @Lazy BookingService bookingService, SeatAdmissionGate seatAdmissionGate,
+        @org.springframework.beans.factory.annotation.Value("${APP_TIMEZONE:Europe/Athens}") String appTimezone) {
         this.gymClassRepository = gymClassRepository;
+        this.lotteryEntryRepository = lotteryEntryRepository;
         this.userService = userService;
         this.bookingService = bookingService;
+        this.seatAdmissionGate = seatAdmissionGate;
+        this.zoneId = java.time.ZoneId.of(appTimezone);
     }
 
     public GymClass createGymClass(@NonNull GymClass gymClass, @NonNull Long trainerId) {
@@ -31,6 +42,7 @@ public class GymClassService {
             throw new IllegalArgumentException("The specified user is not authorized to be a trainer for a class");
         }
         gymClass.setTrainer(instructor);
+        validateAllocation(gymClass);
         return gymClassRepository.save(gymClass);
     }
 
@@ -38,25 +50,42 @@ public class GymClassService {
         GymClass gymClass = gymClassRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Gym class not found with id: " + id));
 
+        Integer previousCapacity = gymClass.getCapacity();
         gymClass.setDescription(gymClassDetails.getDescription());
         gymClass.setCapacity(gymClassDetails.getCapacity());
         gymClass.setDurationMinutes(gymClassDetails.getDurationMinutes());
         gymClass.setStartTime(gymClassDetails.getStartTime());
         gymClass.setEndTime(gymClassDetails.getEndTime());
         gymClass.setLocation(gymClassDetails.getLocation());
+        // The allocation mode is fixed once the lottery has been drawn
+        if (gymClass.getLotteryDrawnAt() == null && gymClassDetails.getAllocationMode() != null) {
+            gymClass.setAllocationMode(gymClassDetails.getAllocationMode());
+            gymClass.setLotteryClosesAt(gymClassDetails.getLotteryClosesAt());
+        }
+        validateAllocation(gymClass);
 
-        return gymClassRepository.save(gymClass);
+        GymClass saved = gymClassRepository.saveAndFlush(gymClass);
+        // Seats added by a capacity increase go to the waitlist first
+        if (previousCapacity != null && saved.getCapacity() != null && saved.getCapacity() > previousCapacity) {
+            bookingService.promoteFromWaitlist(id, saved.getCapacity() - previousCapacity);
+        }
+        // Capacity or start time may have changed; re-seed the gate on next request
+        seatAdmissionGate.invalidate(id);
+        return saved;
     }
 
     public void deleteGymClass(@NonNull Long id) {
                 GymClass gymClass = gymClassRepository.findById(id)
                                 .orElseThrow(() -> new ResourceNotFoundException("Gym class not found with id: " + id));
 
-                // If the class has no attendees at all, we can safely hard-delete it.
+                // If the class has no attendees at all (booked, waitlisted or in the
+                // lottery), we can safely hard-delete it.
                 // This avoids cluttering the schedule/history with unused classes.
-                long bookedCount = bookingService.countActiveBookingsForClass(gymClass);
-                if (bookedCount == 0) {
+                long activeCount = bookingService.countActiveBookingsForClass(gymClass)
+                                + lotteryEntryRepository.countByClassInstance_Id(id);
+                if (activeCount == 0) {
                         gymClassRepository.delete(gymClass);
+                        seatAdmissionGate.invalidate(id);
                         return;
                 }
 
@@ -66,12 +95,104 @@ public class GymClassService {
                 gymClass.setIsCancelled(true);
                 gymClassRepository.save(gymClass);
 
-                // Cancel all active bookings for this class as CANCELLED_BY_GYM (no billing)
+                // Cancel all active bookings for this class as CANCELLED_BY_GYM (no billing).
+                // Lottery entries are cleared by the draw, which allocates nothing
+                // for a cancelled class
                 bookingService.cancelBookingsByGymForClass(id);
     }
 
-    public List<GymClass> findAll() {
-        return gymClassRepository.findAll();
+    /**
+     * Close the facility for [from, to]: every scheduled class starting in the
+     * range (and not yet started) is cancelled together with its bookings, in
+     * a handful of statements and without billing anyone. Returns the members
+     * who lost a seat or waitlist spot, for notification.
+     */
+    public FacilityClosureResultDTO closeFacility(@NonNull LocalDateTime from, @NonNull LocalDateTime to) {
+        if (to.isBefore(from)) {
+            throw new IllegalArgumentException("The closure must end after it starts");
+        }
+        LocalDateTime now = LocalDateTime.now(zoneId);
+        LocalDateTime start = from.isAfter(now) ? from : now;
+        List<Long> classIds = gymClassRepository.lockScheduledStartingBetween(start, to);
+        if (classIds.isEmpty()) {
+            return new FacilityClosureResultDTO(from, to, List.of(), 0, List.of());
+        }
+        gymClassRepository.cancelAll(classIds, now);
+        List<BookingJdbcRepository.CancelledBooking> cancelled = bookingService.cancelBookingsByGymForClasses(classIds);
+        List<Long> memberIds = cancelled.stream()
+                .map(BookingJdbcRepository.CancelledBooking::userId)
+                .distinct()
+                .sorted()
+                .toList();
+        return new FacilityClosureResultDTO(from, to, classIds, cancelled.size(), memberIds);
+    }
+
+    private void validateAllocation(GymClass gymClass) {
+        if (gymClass.getAllocationMode() != GymClass.AllocationMode.LOTTERY || gymClass.getLotteryDrawnAt() != null) {
+            return;
+        }
+        if (gymClass.getLotteryClosesAt() == null) {
+            throw new IllegalArgumentException("Lottery classes require a lotteryClosesAt time");
+        }
+        if (gymClass.getStartTime() != null && !gymClass.getLotteryClosesAt().isBefore(gymClass.getStartTime())) {
+            throw new IllegalArgumentException("The lottery must close before the class starts");
+        }
+    }
+
+    /**
+     * Take one seat on the class counter. Returns false when the class is full.
+     */
+    public boolean tryReserveSeat(@NonNull Long classInstanceId) {
+        return gymClassRepository.tryReserveSeat(classInstanceId) == 1;
+    }
+
+    public void releaseSeats(@NonNull Long classInstanceId, int seats) {
+        if (seats <= 0) {
+            return;
+        }
+        gymClassRepository.releaseSeats(classInstanceId, seats);
+    }
+
+    /**
+     * Recompute booked_count from BOOKED rows for classes starting at or after
+     * {@code since}. Returns the number of counters that had drifted.
+     */
+    public int reconcileBookedCounts(@NonNull LocalDateTime since) {
+        // Find drift without locks, then lock and recount just those rows
+        // (re-checked under the lock), so admissions elsewhere are not blocked
+        List<Long> drifted = gymClassRepository.findDriftedCounters(since);
+        if (drifted.isEmpty()) {
+            return 0;
+        }
+        gymClassRepository.lockCounters(drifted);
+        return gymClassRepository.reconcileBookedCounts(drifted);
+    }
+
+    @Transactional(readOnly = true)
+    public List<com.gym.booking.dto.GymClassDTO> findAllDTOs() {
+        return gymClassRepository.findAllDTOs();
+    }
+
+    /**
+     * One keyset page of classes starting in [from, to), ordered by start time
+     * then id. {@code from} defaults to the start of today; pass the last row's
+     * start time and id as the cursor to continue. Fetches up to {@code limit}
+     * rows, so callers wanting to detect a next page ask for one extra.
+     */
+    @Transactional(readOnly = true)
+    public List<com.gym.booking.dto.GymClassDTO> findPage(LocalDateTime from, LocalDateTime to,
+            GymClass.ClassKind kind, Long classTypeId, Long trainerId, LocalDateTime afterStart, Long afterId,
+            int limit) {
+        LocalDateTime windowStart = from != null ? from : java.time.LocalDate.now(zoneId).atStartOfDay();
+        LocalDateTime cursorStart = windowStart;
+        // No cursor: (start, id) > (from, -1) is start >= from
+        long cursorId = -1L;
+        if (afterStart != null && !afterStart.isBefore(windowStart)) {
+            cursorStart = afterStart;
+            cursorId = afterId != null ? afterId : Long.MAX_VALUE;
+        }
+        return gymClassRepository.findPage(cursorStart, cursorId, to, kind, classTypeId, trainerId,
+                org.springframework.data.domain.PageRequest.of(0, limit));
     }
 
     public GymClass findById(@NonNull Long id) {
@@ -79,9 +200,18 @@ public class GymClassService {
                 .orElseThrow(() -> new ResourceNotFoundException("Gym class not found with id: " + id));
     }
 
-    public List<GymClass> findByTrainer(@NonNull Long trainerId) {
-        User trainer = userService.findById(trainerId);
-        return gymClassRepository.findByTrainer(trainer);
+    @Transactional(readOnly = true)
+    public List<com.gym.booking.dto.GymClassDTO> findDTOsByTrainer(@NonNull Long trainerId) {
+        userService.findById(trainerId);
+        return gymClassRepository.findDTOsByTrainerId(trainerId);
+    }
+
+    @Transactional(readOnly = true)
+    public List<com.gym.booking.dto.GymClassDTO> findDTOsByIds(@NonNull java.util.Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return java.util.Collections.emptyList();
+        }
+        return gymClassRepository.findDTOsByIds(ids);
     }
 
     // Removed searchByName() - cannot search by name as it's derived from ClassType
@@ -0,0 +1,180 @@
+package com.gym.booking.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gym.booking.cache.ExpiringCache;
+import com.gym.booking.exception.IdempotencyConflictException;
+import com.gym.booking.model.IdempotencyKey;
+import com.gym.booking.repository.IdempotencyKeyRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.HexFormat;
+import java.util.function.Supplier;
+
+/**
+ * Idempotency-Key handling for write endpoints.
+ *
+ * A key is scoped to (principal, endpoint, key). The first request claims the
+ * key in idempotency_keys, runs the action and stores its response; retries
+ * get that response back without the action running again. Completed
+ * responses are also kept in a bounded in-memory cache, so the common replay
+ * (double click, client retry) is a lock-free map lookup.
+ *
+ * Deliberately not transactional: the claim must be visible before the action
+ * runs in its own transaction, and the response is recorded after it commits.
+ */
+@Service
+public class IdempotencyService {
+    private static final Logger log = LoggerFactory.getLogger(IdempotencyService.class);
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private record StoredResponse(String requestHash, int status, String body, String location) {
+    }
+
+    private final IdempotencyKeyRepository idempotencyKeyRepository;
+    private final ObjectMapper objectMapper;
+    private final ZoneId zoneId;
+    private final Duration ttl;
+    private final Duration inProgressTimeout;
+    private final ExpiringCache<String, StoredResponse> completed;
+
+    public IdempotencyService(IdempotencyKeyRepository idempotencyKeyRepository,
+            ObjectMapper objectMapper,
+            @Value("${APP_TIMEZONE:Europe/Athens}") String appTimezone,
+            @Value("${app.idempotency.ttl-hours:24}") long ttlHours,
+            @Value("${app.idempotency.in-progress-timeout-seconds:60}") long inProgressTimeoutSeconds,
+            @Value("${app.idempotency.memory.max-entries:10000}") int maxEntries,
+            @Value("${app.idempotency.memory.ttl-minutes:30}") long memoryTtlMinutes) {
+        this.idempotencyKeyRepository = idempotencyKeyRepository;
+        this.objectMapper = objectMapper;
+        this.zoneId = ZoneId.of(appTimezone);
+        this.ttl = Duration.ofHours(ttlHours);
+        this.inProgressTimeout = Duration.ofSeconds(inProgressTimeoutSeconds);
+        this.completed = new ExpiringCache<>(maxEntries, Duration.ofMinutes(memoryTtlMinutes));
+    }
+
+    /**
+     * Run {@code action} at most once per key. Without a key the action simply
+     * runs. {@code fingerprint} describes the request parameters; reusing a key
+     * for a different request is rejected. Only 2xx responses are stored, so a
+     * failed attempt can be retried with the same key.
+     */
+    public ResponseEntity<?> execute(String key, String principal, String endpoint, String fingerprint,
+            Supplier<ResponseEntity<?>> action) {
+        if (key == null || key.isBlank()) {
+            return action.get();
+        }
+        if (key.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException(HEADER + " must be at most " + MAX_KEY_LENGTH + " characters");
+        }
+        String owner = principal != null ? principal : "anonymous";
+        String requestHash = sha256(fingerprint);
+        String scope = owner + '\u0000' + endpoint + '\u0000' + key;
+
+        StoredResponse cached = completed.get(scope);
+        if (cached != null) {
+            return replay(cached, requestHash);
+        }
+
+        // locked_at doubles as the claim token; truncate to what a TIMESTAMP column keeps
+        LocalDateTime now = LocalDateTime.now(zoneId).truncatedTo(ChronoUnit.MICROS);
+        int claimed = idempotencyKeyRepository.claim(key, owner, endpoint, requestHash, now, now.plus(ttl),
+                now.minus(inProgressTimeout));
+        if (claimed == 0) {
+            IdempotencyKey existing = idempotencyKeyRepository.findByIdemKeyAndPrincipalAndEndpoint(key, owner, endpoint)
+                    .orElseThrow(() -> new IdempotencyConflictException(
+                            "A request with this " + HEADER + " is still being processed"));
+            if (existing.getStatus() != IdempotencyKey.Status.COMPLETED) {
+                throw new IdempotencyConflictException("A request with this " + HEADER + " is still being processed");
+            }
+            StoredResponse stored = new StoredResponse(existing.getRequestHash(), existing.getResponseStatus(),
+                    existing.getResponseBody(), existing.getResponseLocation());
+            completed.put(scope, stored);
+            return replay(stored, requestHash);
+        }
+
+        ResponseEntity<?> response;
+        try {
+            response = action.get();
+        } catch (RuntimeException e) {
+            idempotencyKeyRepository.release(key, owner, endpoint, now);
+            throw e;
+        }
+        if (!response.getStatusCode().is2xxSuccessful()) {
+            idempotencyKeyRepository.release(key, owner, endpoint, now);
+            return response;
+        }
+        try {
+            String body = response.getBody() != null ? objectMapper.writeValueAsString(response.getBody()) : null;
+            String location = response.getHeaders().getLocation() != null
+                    ? response.getHeaders().getLocation().toString()
+                    : null;
+            int recorded = idempotencyKeyRepository.complete(key, owner, endpoint, now,
+                    response.getStatusCode().value(), body, location, LocalDateTime.now(zoneId));
+            if (recorded == 1) {
+                completed.put(scope, new StoredResponse(requestHash, response.getStatusCode().value(), body, location));
+            } else {
+                log.warn("Idempotency key {} on {} was taken over before its response was recorded", key, endpoint);
+            }
+        } catch (JsonProcessingException | RuntimeException e) {
+            // The action already ran; a retry will find the key in progress until it goes stale
+            log.error("Failed to record idempotent response for key {} on {}", key, endpoint, e);
+        }
+        return response;
+    }
+
+    @Scheduled(fixedDelayString = "${app.idempotency.cleanup-interval-ms:3600000}")
+    public void purgeExpired() {
+        completed.purgeExpired();
+        try {
+            int removed = idempotencyKeyRepository.deleteExpired(LocalDateTime.now(zoneId));
+            if (removed > 0) {
+                log.debug("Purged {} expired idempotency key(s)", removed);
+            }
+        } catch (Exception e) {
+            log.error("Idempotency key cleanup failed", e);
+        }
+    }
+
+    private ResponseEntity<?> replay(StoredResponse stored, String requestHash) {
+        if (!stored.requestHash().equals(requestHash)) {
+            throw new IdempotencyConflictException(HEADER + " was already used for a different request");
+        }
+        ResponseEntity.BodyBuilder builder = ResponseEntity.status(stored.status())
+                .header(REPLAYED_HEADER, "true");
+        if (stored.location() != null) {
+            builder.header(HttpHeaders.LOCATION, stored.location());
+        }
+        if (stored.body() == null) {
+            return builder.build();
+        }
+        return builder.contentType(MediaType.APPLICATION_JSON).body(stored.body());
+    }
+
+    private static String sha256(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(
+                    (value != null ? value : "").getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
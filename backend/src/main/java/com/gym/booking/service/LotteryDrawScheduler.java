@@ -0,0 +1,44 @@
+package com.gym.booking.service;
+
+import com.gym.booking.model.GymClass;
+import com.gym.booking.repository.GymClassRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * Draws lottery classes whose entry window has closed. Each class is drawn in
+ * its own transaction so one failure does not hold back the others.
+ */
+@Component
+public class LotteryDrawScheduler {
+    private static final Logger log = LoggerFactory.getLogger(LotteryDrawScheduler.class);
+
+    private final GymClassRepository gymClassRepository;
+    private final LotteryService lotteryService;
+    private final ZoneId zoneId;
+
+    public LotteryDrawScheduler(GymClassRepository gymClassRepository, LotteryService lotteryService,
+            @Value("${APP_TIMEZONE:Europe/Athens}") String appTimezone) {
+        this.gymClassRepository = gymClassRepository;
+        this.lotteryService = lotteryService;
+        this.zoneId = ZoneId.of(appTimezone);
+    }
+
+    @Scheduled(fixedDelayString = "${app.booking.lottery.draw-interval-ms:15000}")
+    public void drawDue() {
+        for (Long classInstanceId : gymClassRepository.findLotteriesDue(GymClass.AllocationMode.LOTTERY,
+                LocalDateTime.now(zoneId))) {
+            try {
+                lotteryService.draw(classInstanceId);
+            } catch (Exception e) {
+                log.error("Lottery draw failed for class {}", classInstanceId, e);
+            }
+        }
+    }
+}
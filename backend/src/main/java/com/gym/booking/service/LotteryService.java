@@ -0,0 +1,166 @@
+package com.gym.booking.service;
+
+import com.gym.booking.exception.BookingException;
+import com.gym.booking.exception.ResourceNotFoundException;
+import com.gym.booking.model.Booking;
+import com.gym.booking.model.GymClass;
+import com.gym.booking.model.LotteryEntry;
+import com.gym.booking.model.User;
+import com.gym.booking.repository.GymClassRepository;
+import com.gym.booking.repository.LotteryEntryRepository;
+import com.gym.booking.repository.LotteryJdbcRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.security.SecureRandom;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Lottery allocation for oversubscribed classes.
+ *
+ * While a LOTTERY class is open, members only register an entry; nothing
+ * touches the seat counter. When the window closes the whole entry set is
+ * drawn in one transaction: entrants are ordered by a weighted random key
+ * (members who attended fewer classes recently get better odds), the first
+ * {@code capacity} win a seat and the rest join the waitlist in draw order.
+ * The resulting bookings are written with a single statement.
+ */
+@Service
+@Transactional
+public class LotteryService {
+    private static final Logger log = LoggerFactory.getLogger(LotteryService.class);
+
+    private final GymClassRepository gymClassRepository;
+    private final LotteryEntryRepository lotteryEntryRepository;
+    private final LotteryJdbcRepository lotteryJdbcRepository;
+    private final BookingService bookingService;
+    private final UserService userService;
+    private final SeatAdmissionGate seatAdmissionGate;
+    private final ZoneId zoneId;
+    private final int attendanceLookbackDays;
+    private final SecureRandom random = new SecureRandom();
+
+    public LotteryService(GymClassRepository gymClassRepository,
+            LotteryEntryRepository lotteryEntryRepository,
+            LotteryJdbcRepository lotteryJdbcRepository,
+            BookingService bookingService,
+            UserService userService,
+            SeatAdmissionGate seatAdmissionGate,
+            @Value("${APP_TIMEZONE:Europe/Athens}") String appTimezone,
+            @Value("${app.booking.lottery.attendance-lookback-days:30}") int attendanceLookbackDays) {
+        this.gymClassRepository = gymClassRepository;
+        this.lotteryEntryRepository = lotteryEntryRepository;
+        this.lotteryJdbcRepository = lotteryJdbcRepository;
+        this.bookingService = bookingService;
+        this.userService = userService;
+        this.seatAdmissionGate = seatAdmissionGate;
+        this.zoneId = ZoneId.of(appTimezone);
+        this.attendanceLookbackDays = attendanceLookbackDays;
+    }
+
+    /**
+     * Register a member for the draw of a lottery class. The usual booking
+     * rules (role, past/cancelled class, funds, duplicates) apply at entry time.
+     */
+    public LotteryEntry enter(Long userId, Long classInstanceId) {
+        if (userId == null) {
+            throw new BookingException("User id is required");
+        }
+        if (classInstanceId == null) {
+            throw new BookingException("Class instance id is required");
+        }
+        User user = userService.findById(userId);
+        GymClass classInstance = gymClassRepository.findById(classInstanceId)
+                .orElseThrow(() -> new ResourceNotFoundException("Gym class not found with id: " + classInstanceId));
+
+        if (classInstance.getAllocationMode() != GymClass.AllocationMode.LOTTERY) {
+            throw new BookingException("This class is not allocated by lottery");
+        }
+        if (!classInstance.isLotteryOpen() || (classInstance.getLotteryClosesAt() != null
+                && !LocalDateTime.now(zoneId).isBefore(classInstance.getLotteryClosesAt()))) {
+            throw new BookingException("The lottery for this class is closed");
+        }
+        bookingService.validateBooking(user, classInstance);
+        if (lotteryEntryRepository.existsByClassInstance_IdAndUser_Id(classInstanceId, userId)) {
+            throw new BookingException("User already entered the lottery for this class");
+        }
+
+        LotteryEntry entry = new LotteryEntry();
+        entry.setClassInstance(classInstance);
+        entry.setUser(user);
+        return lotteryEntryRepository.save(entry);
+    }
+
+    public long countEntries(Long classInstanceId) {
+        return lotteryEntryRepository.countByClassInstance_Id(classInstanceId);
+    }
+
+    /**
+     * Draw the lottery for a class. The class row is locked for the duration,
+     * so a draw runs at most once. Returns the number of seats allocated.
+     */
+    public int draw(Long classInstanceId) {
+        GymClass classInstance = gymClassRepository.findByIdForUpdate(classInstanceId).orElse(null);
+        if (classInstance == null || !classInstance.isLotteryOpen()) {
+            return 0;
+        }
+        LocalDateTime now = LocalDateTime.now(zoneId);
+
+        List<Long> winners = new ArrayList<>();
+        List<Long> waitlisted = new ArrayList<>();
+        if (!classInstance.isCancelled()) {
+            List<Long> order = drawOrder(lotteryJdbcRepository.findEntrants(classInstanceId,
+                    now.minusDays(attendanceLookbackDays)));
+            int seats = Math.max(0, classInstance.getCapacity() - classInstance.getBookedCount());
+            winners.addAll(order.subList(0, Math.min(seats, order.size())));
+            if (bookingService.isWaitlistEnabled()) {
+                waitlisted.addAll(order.subList(winners.size(), order.size()));
+            }
+        }
+
+        List<LotteryJdbcRepository.DrawnBooking> drawn = lotteryJdbcRepository.insertDrawnBookings(classInstanceId,
+                winners, waitlisted, lotteryJdbcRepository.nextWaitlistPositions(waitlisted.size()), now);
+        lotteryJdbcRepository.markDrawn(classInstanceId, winners.size(), now);
+        lotteryJdbcRepository.deleteEntries(classInstanceId);
+        seatAdmissionGate.invalidate(classInstanceId);
+        for (LotteryJdbcRepository.DrawnBooking booking : drawn) {
+            Booking.BookingStatus status = Booking.BookingStatus.valueOf(booking.status());
+            bookingService.auditBooking(status == Booking.BookingStatus.WAITLISTED ? "BOOKING_WAITLISTED"
+                    : "BOOKING_CREATED", booking.id(), booking.userId(), classInstanceId, status);
+        }
+
+        log.info("Lottery drawn for class {}: {} booked, {} waitlisted", classInstanceId, winners.size(),
+                waitlisted.size());
+        return winners.size();
+    }
+
+    /**
+     * Weighted random permutation (Efraimidis-Spirakis): each entrant gets the
+     * key -ln(U) / w and entrants are taken in ascending key order. With
+     * w = 1 / (1 + classes attended recently) regulars can still win, but
+     * members who have been missing out get better odds.
+     */
+    private List<Long> drawOrder(List<LotteryJdbcRepository.Entrant> entrants) {
+        record Keyed(Long userId, double key) {
+        }
+        List<Keyed> keyed = new ArrayList<>(entrants.size());
+        for (LotteryJdbcRepository.Entrant entrant : entrants) {
+            double weight = 1.0 / (1 + entrant.recentAttendance());
+            double u = 1.0 - random.nextDouble(); // (0, 1]
+            keyed.add(new Keyed(entrant.userId(), -Math.log(u) / weight));
+        }
+        keyed.sort(Comparator.comparingDouble(Keyed::key));
+        List<Long> order = new ArrayList<>(keyed.size());
+        for (Keyed k : keyed) {
+            order.add(k.userId());
+        }
+        return order;
+    }
+}
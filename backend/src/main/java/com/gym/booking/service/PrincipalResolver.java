@@ -0,0 +1,88 @@
+package com.gym.booking.service;
+
+import com.gym.booking.cache.ExpiringCache;
+import com.gym.booking.model.User;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Maps the authenticated JWT to the local user (id and persisted role).
+ *
+ * Results are cached per token, keyed by {@code sub} and {@code iat}, so
+ * repeated requests with the same token skip UserService entirely; a new
+ * token (re-login, refresh, role change in Keycloak) has a new {@code iat}
+ * and is resolved again. Entries never outlive the token. Admin changes to a
+ * user's role or the user's removal must call {@link #evictUser(Long)}.
+ */
+@Service
+public class PrincipalResolver {
+
+    public record ResolvedPrincipal(Long userId, User.UserRole role) {
+        public boolean isStaff() {
+            return role == User.UserRole.ADMIN || role == User.UserRole.TRAINER;
+        }
+    }
+
+    private final UserService userService;
+    private final ExpiringCache<String, ResolvedPrincipal> cache;
+
+    public PrincipalResolver(UserService userService,
+            @Value("${app.security.principal-cache.max-entries:10000}") int maxEntries,
+            @Value("${app.security.principal-cache.ttl-seconds:300}") long ttlSeconds) {
+        this.userService = userService;
+        this.cache = new ExpiringCache<>(maxEntries, Duration.ofSeconds(ttlSeconds));
+    }
+
+    /**
+     * Resolve the caller, creating the local user on first sight. Empty when
+     * the request is not JWT-authenticated.
+     */
+    public Optional<ResolvedPrincipal> resolve(Authentication authentication) {
+        if (!(authentication instanceof JwtAuthenticationToken jwtAuth)) {
+            return Optional.empty();
+        }
+        Jwt jwt = jwtAuth.getToken();
+        Instant issuedAt = jwt.getIssuedAt();
+        String key = jwt.getSubject() + ':' + (issuedAt != null ? issuedAt.getEpochSecond() : 0);
+
+        ResolvedPrincipal cached = cache.get(key);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        User user = userService.findOrCreateFromJwtClaims(jwt.getClaims());
+        // A deleted (deactivated) account no longer acts as anyone
+        if (user.getStatus() == User.UserStatus.DELETED) {
+            return Optional.empty();
+        }
+        ResolvedPrincipal principal = new ResolvedPrincipal(user.getId(), user.getRole());
+        long ttlMillis = jwt.getExpiresAt() != null
+                ? Duration.between(Instant.now(), jwt.getExpiresAt()).toMillis()
+                : Long.MAX_VALUE;
+        cache.put(key, principal, ttlMillis);
+        return Optional.of(principal);
+    }
+
+    /**
+     * Like {@link #resolve(Authentication)} but fails for non-JWT requests.
+     */
+    public ResolvedPrincipal require(Authentication authentication) {
+        return resolve(authentication).orElseThrow(
+                () -> new IllegalArgumentException("Unable to resolve current user from authentication token"));
+    }
+
+    /**
+     * Drop cached resolutions for a user whose role changed or who was deleted.
+     */
+    public void evictUser(Long userId) {
+        if (userId != null) {
+            cache.removeIf((key, principal) -> userId.equals(principal.userId()));
+        }
+    }
+}
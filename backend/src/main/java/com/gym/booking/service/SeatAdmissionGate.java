@@ -0,0 +1,162 @@
+package com.gym.booking.service;
+
+import com.gym.booking.repository.GymClassRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-memory admission gate in front of BookingService.createBooking.
+ *
+ * Keeps a lock-free remaining-seat counter per class instance, seeded lazily
+ * from class_instances. Once a counter reaches zero further requests for that
+ * class are rejected without opening a transaction. The database remains the
+ * source of truth: a permit only lets a request reach the conditional UPDATE
+ * in GymClassRepository, and counters are periodically re-seeded from the DB.
+ * Being too permissive is harmless; being too strict is repaired on the next
+ * reconcile.
+ */
+@Component
+public class SeatAdmissionGate {
+    private static final Logger log = LoggerFactory.getLogger(SeatAdmissionGate.class);
+
+    private final GymClassRepository gymClassRepository;
+    private final ZoneId zoneId;
+    private final boolean enabled;
+    private final ConcurrentHashMap<Long, AtomicInteger> remaining = new ConcurrentHashMap<>();
+
+    public SeatAdmissionGate(GymClassRepository gymClassRepository,
+            @Value("${APP_TIMEZONE:Europe/Athens}") String appTimezone,
+            @Value("${app.booking.admission-gate.enabled:true}") boolean enabled) {
+        this.gymClassRepository = gymClassRepository;
+        this.zoneId = ZoneId.of(appTimezone);
+        this.enabled = enabled;
+    }
+
+    /**
+     * Take a permit for one seat. Returns false only when the gate knows the
+     * class is full; unknown or unbookable classes are let through so the
+     * service can report the proper error.
+     */
+    public boolean tryAcquire(Long classInstanceId) {
+        if (!enabled || classInstanceId == null) {
+            return true;
+        }
+        AtomicInteger seats = remaining.get(classInstanceId);
+        if (seats == null) {
+            seats = seed(classInstanceId);
+            if (seats == null) {
+                return true;
+            }
+        }
+        while (true) {
+            int current = seats.get();
+            if (current <= 0) {
+                return false;
+            }
+            if (seats.compareAndSet(current, current - 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Return permits, e.g. when an admitted request failed or a seat was freed.
+     */
+    public void release(Long classInstanceId, int seats) {
+        if (!enabled || classInstanceId == null || seats <= 0) {
+            return;
+        }
+        AtomicInteger counter = remaining.get(classInstanceId);
+        if (counter != null) {
+            counter.addAndGet(seats);
+        }
+    }
+
+    /**
+     * Return permits once the surrounding transaction commits, so a rolled back
+     * cancellation never hands out a seat the database still considers taken.
+     */
+    public void releaseAfterCommit(Long classInstanceId, int seats) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            release(classInstanceId, seats);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                release(classInstanceId, seats);
+            }
+        });
+    }
+
+    /**
+     * The database rejected an admitted request because the class is full.
+     */
+    public void markFull(Long classInstanceId) {
+        AtomicInteger counter = remaining.get(classInstanceId);
+        if (counter != null) {
+            counter.set(0);
+        }
+    }
+
+    /**
+     * Forget a class (capacity change, cancellation); it is re-seeded on the
+     * next request.
+     */
+    public void invalidate(Long classInstanceId) {
+        if (classInstanceId != null) {
+            remaining.remove(classInstanceId);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.booking.admission-gate.reconcile-interval-ms:30000}")
+    public void reconcile() {
+        if (!enabled || remaining.isEmpty()) {
+            return;
+        }
+        try {
+            List<Long> tracked = List.copyOf(remaining.keySet());
+            Map<Long, Integer> fresh = new HashMap<>();
+            for (Object[] row : gymClassRepository.findRemainingSeats(tracked, LocalDateTime.now(zoneId))) {
+                fresh.put((Long) row[0], ((Number) row[1]).intValue());
+            }
+            for (Long id : tracked) {
+                Integer seats = fresh.get(id);
+                if (seats == null) {
+                    // Started, cancelled or deleted: stop tracking
+                    remaining.remove(id);
+                } else {
+                    AtomicInteger counter = remaining.get(id);
+                    if (counter != null) {
+                        counter.set(Math.max(seats, 0));
+                    }
+                }
+            }
+        } catch (Exception e) {
+            log.error("Admission gate reconciliation failed", e);
+        }
+    }
+
+    private AtomicInteger seed(Long classInstanceId) {
+        Integer seats = gymClassRepository.findRemainingSeats(classInstanceId, LocalDateTime.now(zoneId));
+        if (seats == null) {
+            return null;
+        }
+        AtomicInteger fresh = new AtomicInteger(Math.max(seats, 0));
+        AtomicInteger existing = remaining.putIfAbsent(classInstanceId, fresh);
+        return existing != null ? existing : fresh;
+    }
+}
@@ -0,0 +1,46 @@
+package com.gym.booking.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * Periodically repairs drift between class_instances.booked_count and the
+ * BOOKED rows in bookings (e.g. after manual SQL edits or a crashed node).
+ * Only classes that have not finished their lookback window are checked.
+ */
+@Component
+public class SeatCounterReconciler {
+    private static final Logger log = LoggerFactory.getLogger(SeatCounterReconciler.class);
+
+    private final GymClassService gymClassService;
+    private final ZoneId zoneId;
+    private final long lookbackHours;
+
+    public SeatCounterReconciler(GymClassService gymClassService,
+            @Value("${APP_TIMEZONE:Europe/Athens}") String appTimezone,
+            @Value("${app.booking.seat-counter.reconcile-lookback-hours:24}") long lookbackHours) {
+        this.gymClassService = gymClassService;
+        this.zoneId = ZoneId.of(appTimezone);
+        this.lookbackHours = lookbackHours;
+    }
+
+    @Scheduled(fixedDelayString = "${app.booking.seat-counter.reconcile-interval-ms:300000}",
+            initialDelayString = "${app.booking.seat-counter.reconcile-initial-delay-ms:60000}")
+    public void reconcile() {
+        try {
+            LocalDateTime since = LocalDateTime.now(zoneId).minusHours(lookbackHours);
+            int repaired = gymClassService.reconcileBookedCounts(since);
+            if (repaired > 0) {
+                log.warn("Seat counter reconciliation repaired {} class instance(s)", repaired);
+            }
+        } catch (Exception e) {
+            log.error("Seat counter reconciliation failed", e);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.gym.booking.service;
+
+import com.gym.booking.dto.BulkSettlementResultDTO;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Applies wallet funds to unsettled billing events. A member is swept right
+ * after a top-up commits, and a scheduled run sweeps every member with money
+ * and open events (catching balances set by admins and failed sweeps).
+ *
+ * Each member is swept in its own transaction. The scheduled run splits the
+ * members into chunks processed in parallel, with at most concurrency chunks
+ * holding a database connection at a time.
+ */
+@Component
+public class SettlementSweeper {
+    private static final Logger log = LoggerFactory.getLogger(SettlementSweeper.class);
+
+    private final BillingService billingService;
+    private final TransactionTemplate sweepTransaction;
+    private final boolean enabled;
+    private final int chunkSize;
+    private final Semaphore connections;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public SettlementSweeper(BillingService billingService, PlatformTransactionManager transactionManager,
+            @Value("${app.billing.sweep.enabled:true}") boolean enabled,
+            @Value("${app.billing.sweep.chunk-size:100}") int chunkSize,
+            @Value("${app.billing.sweep.concurrency:4}") int concurrency) {
+        this.billingService = billingService;
+        // After-commit callbacks still see the finished transaction; start a new one
+        this.sweepTransaction = new TransactionTemplate(transactionManager);
+        this.sweepTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.enabled = enabled;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.connections = new Semaphore(Math.max(1, concurrency));
+    }
+
+    /**
+     * Sweep the member once the surrounding transaction (e.g. a top-up) has
+     * committed, or right away outside a transaction.
+     */
+    public void sweepAfterCommit(Long userId) {
+        if (!enabled) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            sweepQuietly(userId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                sweepQuietly(userId);
+            }
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${app.billing.sweep.interval-ms:900000}",
+            initialDelayString = "${app.billing.sweep.initial-delay-ms:120000}")
+    public void sweepAll() {
+        if (!enabled) {
+            return;
+        }
+        List<Long> userIds = billingService.findUserIdsToSweep();
+        if (userIds.isEmpty()) {
+            return;
+        }
+        AtomicInteger settled = new AtomicInteger();
+        List<Future<?>> chunks = new ArrayList<>();
+        for (int from = 0; from < userIds.size(); from += chunkSize) {
+            List<Long> chunk = userIds.subList(from, Math.min(from + chunkSize, userIds.size()));
+            chunks.add(executor.submit(() -> sweepChunk(chunk, settled)));
+        }
+        for (Future<?> chunk : chunks) {
+            try {
+                chunk.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("Settlement sweep chunk failed", e);
+            }
+        }
+        log.info("Settlement sweep: {} event(s) settled for {} member(s)", settled.get(), userIds.size());
+    }
+
+    private void sweepChunk(List<Long> userIds, AtomicInteger settled) {
+        try {
+            connections.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        try {
+            for (Long userId : userIds) {
+                settled.addAndGet(sweepQuietly(userId));
+            }
+        } finally {
+            connections.release();
+        }
+    }
+
+    // One member per transaction; a failure is logged and left for the next run
+    private int sweepQuietly(Long userId) {
+        try {
+            BulkSettlementResultDTO result = sweepTransaction.execute(
+                    status -> billingService.settleFromWallet(userId));
+            return result != null ? result.getSettled() : 0;
+        } catch (Exception e) {
+            log.warn("Settlement sweep failed for user {}", userId, e);
+            return 0;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -29,33 +29,6 @@ public class UserService {
         return userRepository.save(user);
     }
 
-    // Atomically debit if sufficient funds. Returns number of rows updated (1 =
-    // success)
-    public int debitIfSufficient(@NonNull Long userId, @NonNull java.math.BigDecimal amount) {
-        return userRepository.debitIfSufficient(userId, amount);
-    }
-
-    // Atomically credit (top-up)
-    public int creditBalance(@NonNull Long userId, @NonNull java.math.BigDecimal amount) {
-        return userRepository.creditBalance(userId, amount);
-    }
-
-    // Atomically set balance
-    public int setBalanceAtomic(@NonNull Long userId, @NonNull java.math.BigDecimal newBalance) {
-        return userRepository.setBalance(userId, newBalance);
-    }
-
-    // Compare and set balance
-    public int compareAndSetBalance(@NonNull Long userId, @NonNull java.math.BigDecimal expected,
-            @NonNull java.math.BigDecimal newBalance) {
-        return userRepository.compareAndSetBalance(userId, expected, newBalance);
-    }
-
-    // Decrement bonus days atomically if positive
-    public int decrementBonusIfPositive(@NonNull Long userId) {
-        return userRepository.decrementBonusIfPositive(userId);
-    }
-
     public User updateUser(@NonNull Long id, @NonNull User userDetails) {
         User user = userRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("User not found with id: " + id));
@@ -66,10 +39,23 @@ public class UserService {
         return userRepository.save(user);
     }
 
+    /**
+     * Delete a user. Members with history (wallet ledger, bookings, billing)
+     * are marked DELETED instead: the ledger is append-only and the other
+     * records must keep their member, so the row stays and only the account
+     * is deactivated.
+     */
     public void deleteUser(@NonNull Long id) {
-        userRepository.findById(id)
+        User user = userRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("User not found with id: " + id));
-        userRepository.deleteById(id);
+        if (userRepository.hasHistory(id)) {
+            user.setStatus(User.UserStatus.DELETED);
+            userRepository.save(user);
+            return;
+        }
+        userRepository.delete(user);
+        // Surface any remaining reference here (mapped to 409) rather than at commit
+        userRepository.flush();
     }
 
     public List<User> findAllTrainers() {
@@ -80,6 +66,11 @@ public class UserService {
         return userRepository.findByRole(UserRole.MEMBER);
     }
 
+    @Transactional(readOnly = true)
+    public List<com.gym.booking.dto.UserDTO> findAllMemberDTOs() {
+        return userRepository.findDTOsByRole(UserRole.MEMBER, User.UserStatus.DELETED);
+    }
+
     public boolean existsByEmail(@NonNull String email) {
         return userRepository.existsByEmail(email);
     }
@@ -89,6 +80,10 @@ public class UserService {
                 .orElseThrow(() -> new ResourceNotFoundException("User not found with id: " + id));
     }
 
+    public List<User> findAllById(@NonNull java.util.Collection<Long> ids) {
+        return userRepository.findAllById(ids);
+    }
+
     public Optional<User> findOptionalByEmail(@NonNull String email) {
         return userRepository.findByEmail(email);
     }
@@ -170,21 +165,27 @@ public class UserService {
         Optional<User> existing = userRepository.findByEmail(email);
         if (existing.isPresent()) {
             User u = existing.get();
+            boolean changed = false;
             if (u.getKeycloakId() == null || u.getKeycloakId().isBlank()) {
                 u.setKeycloakId(sub);
+                changed = true;
             }
             if (u.getName() == null || u.getName().isBlank()) {
                 u.setName(name);
+                changed = true;
             }
             // Sync role if token indicates higher privilege (never downgrade ADMIN)
             if (u.getRole() != UserRole.ADMIN) {
-                if (resolvedRole == UserRole.ADMIN || resolvedRole == UserRole.TRAINER) {
+                if ((resolvedRole == UserRole.ADMIN || resolvedRole == UserRole.TRAINER) && u.getRole() != resolvedRole) {
                     u.setRole(resolvedRole);
+                    changed = true;
                 } else if (u.getRole() == null) {
                     u.setRole(resolvedRole);
+                    changed = true;
                 }
             }
-            return userRepository.save(u);
+            // Only write when the token actually changed something
+            return changed ? userRepository.save(u) : u;
         }
 
         User user = new User();
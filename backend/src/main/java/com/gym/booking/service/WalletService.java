@@ -1,21 +1,38 @@
 package com.gym.booking.service;
 
+import com.gym.booking.dto.WalletTransactionDTO;
 import com.gym.booking.model.Booking;
 import com.gym.booking.model.WalletTransaction;
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.List;
 
 public interface WalletService {
     record WalletChargeResult(boolean fullySettled, boolean bonusConsumed, BigDecimal chargedAmount) {
     }
 
+    record BookingCharge(Long userId, Long bookingId, BigDecimal amount) {
+    }
+
     BigDecimal getBalance(Long userId);
 
+    BigDecimal getBalanceAsOf(Long userId, LocalDateTime at);
+
     WalletTransaction topUp(Long userId, BigDecimal amount, String reference);
 
     WalletTransaction setBalance(Long userId, BigDecimal amount, String reference);
 
     WalletChargeResult chargeForBooking(Long userId, BigDecimal amount, Booking booking);
 
-    List<WalletTransaction> getTransactions(Long userId);
+    /**
+     * chargeForBooking for many bookings at once; results are in the order of
+     * {@code charges}.
+     */
+    List<WalletChargeResult> chargeForBookings(List<BookingCharge> charges);
+
+    /**
+     * One page of a member's wallet history, newest first, strictly before the
+     * (beforeAt, beforeId) cursor; a null cursor starts at the newest entry.
+     */
+    List<WalletTransactionDTO> getTransactionPage(Long userId, LocalDateTime beforeAt, Long beforeId, int limit);
 }
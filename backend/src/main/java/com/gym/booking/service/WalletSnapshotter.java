@@ -0,0 +1,55 @@
+package com.gym.booking.service;
+
+import com.gym.booking.repository.WalletLedgerJdbcRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * Compacts the wallet ledger into snapshots so balance reads only replay a
+ * short tail: frequently for members with at least every-entries new entries
+ * since their last snapshot, and once a day for every member with any.
+ */
+@Component
+public class WalletSnapshotter {
+    private static final Logger log = LoggerFactory.getLogger(WalletSnapshotter.class);
+
+    private final WalletLedgerJdbcRepository walletLedgerJdbcRepository;
+    private final ZoneId zoneId;
+    private final int everyEntries;
+
+    public WalletSnapshotter(WalletLedgerJdbcRepository walletLedgerJdbcRepository,
+            @Value("${APP_TIMEZONE:Europe/Athens}") String appTimezone,
+            @Value("${app.wallet.snapshot.every-entries:100}") int everyEntries) {
+        this.walletLedgerJdbcRepository = walletLedgerJdbcRepository;
+        this.zoneId = ZoneId.of(appTimezone);
+        this.everyEntries = Math.max(1, everyEntries);
+    }
+
+    @Scheduled(fixedDelayString = "${app.wallet.snapshot.check-interval-ms:300000}",
+            initialDelayString = "${app.wallet.snapshot.initial-delay-ms:60000}")
+    public void snapshotLongTails() {
+        snapshot(everyEntries);
+    }
+
+    @Scheduled(cron = "${app.wallet.snapshot.daily-cron:0 30 3 * * *}", zone = "${APP_TIMEZONE:Europe/Athens}")
+    public void snapshotDaily() {
+        snapshot(1);
+    }
+
+    private void snapshot(int minEntries) {
+        try {
+            int written = walletLedgerJdbcRepository.snapshot(minEntries, LocalDateTime.now(zoneId));
+            if (written > 0) {
+                log.info("Wrote {} wallet snapshot(s)", written);
+            }
+        } catch (Exception e) {
+            log.error("Wallet snapshot failed", e);
+        }
+    }
+}
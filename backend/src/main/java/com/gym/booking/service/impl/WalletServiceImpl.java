@@ -1,34 +1,63 @@
 package com.gym.booking.service.impl;
 
+import com.gym.booking.dto.WalletTransactionDTO;
+import com.gym.booking.exception.ResourceNotFoundException;
 import com.gym.booking.model.Booking;
-import com.gym.booking.model.User;
 import com.gym.booking.model.WalletTransaction;
+import com.gym.booking.repository.WalletLedgerJdbcRepository;
 import com.gym.booking.repository.WalletTransactionRepository;
+import com.gym.booking.service.AuditLogWriter;
+import com.gym.booking.service.AuditMetadata;
+import com.gym.booking.service.SettlementSweeper;
 import com.gym.booking.service.UserService;
 import com.gym.booking.service.WalletService;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.List;
-import java.util.Optional;
 
 @Service
 @Transactional
 public class WalletServiceImpl implements WalletService {
 
+    private static final LocalDateTime NO_CURSOR = LocalDateTime.of(9999, 12, 31, 0, 0);
+
     private final WalletTransactionRepository repo;
     private final UserService userService;
-
-    public WalletServiceImpl(WalletTransactionRepository repo, UserService userService) {
+    private final WalletLedgerJdbcRepository walletLedgerJdbcRepository;
+    private final AuditLogWriter auditLogWriter;
+    private final SettlementSweeper settlementSweeper;
+    private final ZoneId zoneId;
+
+    public WalletServiceImpl(WalletTransactionRepository repo, UserService userService,
+            WalletLedgerJdbcRepository walletLedgerJdbcRepository, AuditLogWriter auditLogWriter,
+            SettlementSweeper settlementSweeper, @Value("${APP_TIMEZONE:Europe/Athens}") String appTimezone) {
         this.repo = repo;
         this.userService = userService;
+        this.walletLedgerJdbcRepository = walletLedgerJdbcRepository;
+        this.auditLogWriter = auditLogWriter;
+        this.settlementSweeper = settlementSweeper;
+        this.zoneId = ZoneId.of(appTimezone);
     }
 
     @Override
     public BigDecimal getBalance(Long userId) {
-        User user = userService.findById(userId);
-        return Optional.ofNullable(user.getWalletBalance()).orElse(BigDecimal.ZERO);
+        BigDecimal balance = walletLedgerJdbcRepository.balance(userId);
+        if (balance == null)
+            throw new ResourceNotFoundException("User not found with id: " + userId);
+        return balance;
+    }
+
+    @Override
+    public BigDecimal getBalanceAsOf(Long userId, LocalDateTime at) {
+        BigDecimal balance = walletLedgerJdbcRepository.balanceAsOf(userId, at);
+        if (balance == null)
+            throw new ResourceNotFoundException("User not found with id: " + userId);
+        return balance;
     }
 
     @Override
@@ -37,93 +66,130 @@ public class WalletServiceImpl implements WalletService {
             throw new IllegalArgumentException("amount required");
         if (amount.signum() <= 0)
             throw new IllegalArgumentException("amount must be positive");
-        // Use atomic credit and then fetch fresh user for the ledger entry
-        userService.creditBalance(userId, amount);
-        User user = userService.findById(userId);
-
-        WalletTransaction tx = new WalletTransaction();
-        tx.setUser(user);
-        tx.setAmount(amount);
-        tx.setType("TOPUP");
-        tx.setReference(reference);
-        return repo.save(tx);
+        WalletTransaction saved = loadAppended(userId,
+                walletLedgerJdbcRepository.append(userId, amount, "TOPUP", reference, LocalDateTime.now(zoneId)));
+        audit(saved);
+        // Put the new funds towards outstanding charges once the top-up is committed
+        settlementSweeper.sweepAfterCommit(userId);
+        return saved;
     }
 
     @Override
     public WalletTransaction setBalance(Long userId, BigDecimal amount, String reference) {
         if (amount == null)
             throw new IllegalArgumentException("amount required");
-        // Record old balance for ledger, then set atomically
-        User user = userService.findById(userId);
-        BigDecimal old = Optional.ofNullable(user.getWalletBalance()).orElse(BigDecimal.ZERO);
-        userService.setBalanceAtomic(userId, amount);
-        User fresh = userService.findById(userId);
-
-        WalletTransaction tx = new WalletTransaction();
-        tx.setUser(fresh);
-        tx.setAmount(amount.subtract(old));
-        tx.setType("SET");
-        tx.setReference(reference);
-        return repo.save(tx);
+        // Recorded as the difference to the current balance, computed under the row lock
+        WalletTransaction saved = loadAppended(userId,
+                walletLedgerJdbcRepository.appendSetBalance(userId, amount, reference, LocalDateTime.now(zoneId)));
+        audit(saved);
+        return saved;
     }
 
+    /**
+     * One round trip: debits the full amount if the balance covers it,
+     * otherwise drains what is left and consumes a bonus day when available.
+     */
     @Override
     public WalletChargeResult chargeForBooking(Long userId, BigDecimal amount, Booking booking) {
         if (amount == null)
             amount = BigDecimal.ZERO;
-        BigDecimal charged = BigDecimal.ZERO;
-        boolean bonusConsumed = false;
-
-        // Try atomic full debit first
-        int fullDebited = userService.debitIfSufficient(userId, amount);
-        if (fullDebited == 1) {
-            User fresh = userService.findById(userId);
-            WalletTransaction tx = new WalletTransaction();
-            tx.setUser(fresh);
-            tx.setAmount(amount.negate());
-            tx.setType("CHARGE");
-            tx.setReference(booking != null ? "booking:" + booking.getId() : null);
-            repo.save(tx);
-            charged = amount;
-            return new WalletChargeResult(true, false, charged);
+        String reference = reference(booking != null ? booking.getId() : null);
+        WalletLedgerJdbcRepository.ChargeOutcome outcome = walletLedgerJdbcRepository.charge(userId, amount, reference,
+                LocalDateTime.now(zoneId));
+        if (outcome == null)
+            throw new ResourceNotFoundException("User not found with id: " + userId);
+        if (outcome.transactionId() != null) {
+            audit(userId, outcome.transactionId(), outcome.type(), outcome.charged().negate(), reference,
+                    booking != null ? booking.getId() : null);
         }
+        return new WalletChargeResult(outcome.fullyDebited() || outcome.bonusConsumed(), outcome.bonusConsumed(),
+                outcome.charged());
+    }
 
-        // Attempt to drain whatever is left in wallet using compare-and-set retries
-        for (int i = 0; i < 3; i++) {
-            User u = userService.findById(userId);
-            BigDecimal wallet = Optional.ofNullable(u.getWalletBalance()).orElse(BigDecimal.ZERO);
-            if (wallet.compareTo(BigDecimal.ZERO) <= 0)
-                break;
-
-            int drained = userService.compareAndSetBalance(userId, wallet, BigDecimal.ZERO);
-            if (drained == 1) {
-                charged = wallet;
-                User fresh = userService.findById(userId);
-                WalletTransaction tx = new WalletTransaction();
-                tx.setUser(fresh);
-                tx.setAmount(charged.negate());
-                tx.setType("CHARGE_PARTIAL");
-                tx.setReference(booking != null ? "booking:" + booking.getId() : null);
-                repo.save(tx);
-                break;
+    /**
+     * chargeForBookings in as few statements as possible: one per round, where
+     * a round holds at most one charge per member (a member's second charge
+     * must see the balance left by the first).
+     */
+    @Override
+    public List<WalletChargeResult> chargeForBookings(List<BookingCharge> charges) {
+        LocalDateTime now = LocalDateTime.now(zoneId);
+        WalletChargeResult[] results = new WalletChargeResult[charges.size()];
+        List<Integer> pending = new java.util.ArrayList<>();
+        for (int i = 0; i < charges.size(); i++) {
+            pending.add(i);
+        }
+        while (!pending.isEmpty()) {
+            java.util.Map<Long, Integer> round = new java.util.LinkedHashMap<>();
+            List<Integer> later = new java.util.ArrayList<>();
+            for (int i : pending) {
+                if (round.putIfAbsent(charges.get(i).userId(), i) != null) {
+                    later.add(i);
+                }
+            }
+            List<WalletLedgerJdbcRepository.ChargeRequest> requests = new java.util.ArrayList<>(round.size());
+            for (int i : round.values()) {
+                BookingCharge charge = charges.get(i);
+                requests.add(new WalletLedgerJdbcRepository.ChargeRequest(charge.userId(),
+                        charge.amount() != null ? charge.amount() : BigDecimal.ZERO, reference(charge.bookingId())));
+            }
+            for (WalletLedgerJdbcRepository.ChargeOutcome outcome : walletLedgerJdbcRepository.chargeAll(requests,
+                    now)) {
+                int i = round.get(outcome.userId());
+                Long bookingId = charges.get(i).bookingId();
+                if (outcome.transactionId() != null) {
+                    audit(outcome.userId(), outcome.transactionId(), outcome.type(), outcome.charged().negate(),
+                            reference(bookingId), bookingId);
+                }
+                results[i] = new WalletChargeResult(outcome.fullyDebited() || outcome.bonusConsumed(),
+                        outcome.bonusConsumed(), outcome.charged());
             }
-            // else retry
+            for (Long userId : round.keySet()) {
+                if (results[round.get(userId)] == null)
+                    throw new ResourceNotFoundException("User not found with id: " + userId);
+            }
+            pending = later;
         }
+        return java.util.Arrays.asList(results);
+    }
 
-        // Try to consume a bonus day atomically
-        int bonusDecr = userService.decrementBonusIfPositive(userId);
-        if (bonusDecr == 1) {
-            bonusConsumed = true;
-            return new WalletChargeResult(true, true, charged);
+    private static String reference(Long bookingId) {
+        return bookingId != null ? "booking:" + bookingId : null;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<WalletTransactionDTO> getTransactionPage(Long userId, LocalDateTime beforeAt, Long beforeId,
+            int limit) {
+        // No cursor: everything up to the newest entry
+        LocalDateTime cursorAt = beforeAt != null ? beforeAt : NO_CURSOR;
+        long cursorId = beforeAt != null ? (beforeId != null ? beforeId : Long.MIN_VALUE) : Long.MAX_VALUE;
+        List<WalletTransactionDTO> page = walletLedgerJdbcRepository.history(userId, cursorAt, cursorId, limit);
+        if (page.isEmpty()) {
+            // Unknown member rather than an empty history
+            userService.findById(userId);
         }
+        return page;
+    }
 
-        // Not fully settled
-        return new WalletChargeResult(false, false, charged);
+    private WalletTransaction loadAppended(Long userId, Long transactionId) {
+        if (transactionId == null)
+            throw new ResourceNotFoundException("User not found with id: " + userId);
+        return repo.findById(transactionId)
+                .orElseThrow(() -> new IllegalStateException("Wallet transaction " + transactionId + " not found"));
     }
 
-    @Override
-    public List<WalletTransaction> getTransactions(Long userId) {
-        User user = userService.findById(userId);
-        return repo.findByUserOrderByCreatedAtDesc(user);
+    private void audit(WalletTransaction tx) {
+        audit(tx.getUser().getId(), tx.getId(), tx.getType(), tx.getAmount(), tx.getReference(), null);
+    }
+
+    private void audit(Long userId, Long transactionId, String type, BigDecimal amount, String reference,
+            Long bookingId) {
+        auditLogWriter.record("WALLET_" + type, "USER", userId, AuditMetadata.builder()
+                .type(type)
+                .amount(amount)
+                .transactionId(transactionId)
+                .bookingId(bookingId)
+                .reference(reference));
     }
 }
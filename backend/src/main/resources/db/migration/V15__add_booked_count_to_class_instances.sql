@@ -0,0 +1,17 @@
+-- Denormalized seat counter on class_instances so admission is a single conditional UPDATE
+ALTER TABLE class_instances
+    ADD COLUMN IF NOT EXISTS booked_count INTEGER NOT NULL DEFAULT 0;
+
+-- Backfill from active bookings
+UPDATE class_instances ci
+SET booked_count = b.cnt
+FROM (
+    SELECT class_instance_id, COUNT(*) AS cnt
+    FROM bookings
+    WHERE status = 'BOOKED'
+    GROUP BY class_instance_id
+) b
+WHERE b.class_instance_id = ci.id;
+
+ALTER TABLE class_instances
+    ADD CONSTRAINT chk_class_instances_booked_count_non_negative CHECK (booked_count >= 0);
@@ -0,0 +1,10 @@
+-- FIFO waitlist on bookings: WAITLISTED rows carry a monotonically increasing position
+CREATE SEQUENCE IF NOT EXISTS booking_waitlist_seq;
+
+ALTER TABLE bookings
+    ADD COLUMN IF NOT EXISTS waitlist_position BIGINT;
+
+-- Head-of-queue lookup per class: ORDER BY waitlist_position LIMIT 1 is a single index probe
+CREATE INDEX IF NOT EXISTS idx_bookings_waitlist_head
+    ON bookings(class_instance_id, waitlist_position)
+    WHERE status = 'WAITLISTED';
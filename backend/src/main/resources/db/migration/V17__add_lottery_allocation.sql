@@ -0,0 +1,19 @@
+-- Lottery allocation: requests are collected until lottery_closes_at and seats are drawn in one batch
+ALTER TABLE class_instances
+    ADD COLUMN IF NOT EXISTS allocation_mode VARCHAR(20) NOT NULL DEFAULT 'FIRST_COME',
+    ADD COLUMN IF NOT EXISTS lottery_closes_at TIMESTAMP,
+    ADD COLUMN IF NOT EXISTS lottery_drawn_at TIMESTAMP;
+
+CREATE TABLE IF NOT EXISTS lottery_entries (
+    id BIGSERIAL PRIMARY KEY,
+    class_instance_id BIGINT NOT NULL REFERENCES class_instances(id) ON DELETE CASCADE,
+    user_id BIGINT NOT NULL REFERENCES users(id),
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP,
+    CONSTRAINT uq_lottery_entries_class_user UNIQUE (class_instance_id, user_id)
+);
+
+-- Due-draw lookup for the scheduler
+CREATE INDEX IF NOT EXISTS idx_class_instances_lottery_due
+    ON class_instances(lottery_closes_at)
+    WHERE allocation_mode = 'LOTTERY' AND lottery_drawn_at IS NULL;
@@ -0,0 +1,21 @@
+-- Idempotency-Key support for write endpoints (booking, wallet, billing settle).
+-- One row per (key, principal, endpoint); the response is stored once the first
+-- request completes so retries can be replayed.
+CREATE TABLE IF NOT EXISTS idempotency_keys (
+    id BIGSERIAL PRIMARY KEY,
+    idem_key VARCHAR(255) NOT NULL,
+    principal VARCHAR(255) NOT NULL,
+    endpoint VARCHAR(255) NOT NULL,
+    request_hash VARCHAR(64) NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    response_status INTEGER,
+    response_body TEXT,
+    response_location VARCHAR(512),
+    locked_at TIMESTAMP NOT NULL,
+    expires_at TIMESTAMP NOT NULL,
+    created_at TIMESTAMP NOT NULL,
+    updated_at TIMESTAMP,
+    CONSTRAINT uq_idempotency_keys_scope UNIQUE (idem_key, principal, endpoint)
+);
+
+CREATE INDEX IF NOT EXISTS idx_idempotency_keys_expires_at ON idempotency_keys(expires_at);
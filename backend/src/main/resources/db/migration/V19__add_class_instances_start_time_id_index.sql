@@ -0,0 +1,4 @@
+-- Keyset pagination for GET /api/classes seeks on (start_time, id); the composite
+-- index also serves every lookup the single-column start_time index did
+CREATE INDEX IF NOT EXISTS idx_class_instances_start_time_id ON class_instances(start_time, id);
+DROP INDEX IF EXISTS idx_class_instances_start_time;
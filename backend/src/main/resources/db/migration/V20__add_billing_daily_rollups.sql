@@ -0,0 +1,28 @@
+-- Per-user, per-day billing totals maintained incrementally by BillingService.
+-- Every amount is a running sum of billing_events.amount for that user and
+-- event day; billed = payment + bonus + unsettled
+CREATE TABLE IF NOT EXISTS billing_daily_rollups (
+    user_id BIGINT NOT NULL REFERENCES users(id) ON DELETE CASCADE,
+    day DATE NOT NULL,
+    event_count INTEGER NOT NULL DEFAULT 0,
+    billed_amount NUMERIC(12,2) NOT NULL DEFAULT 0,
+    payment_amount NUMERIC(12,2) NOT NULL DEFAULT 0,
+    bonus_amount NUMERIC(12,2) NOT NULL DEFAULT 0,
+    unsettled_amount NUMERIC(12,2) NOT NULL DEFAULT 0,
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (user_id, day)
+);
+
+-- Dashboard reads across all users for a range of days
+CREATE INDEX IF NOT EXISTS idx_billing_daily_rollups_day ON billing_daily_rollups(day);
+
+-- Seed from existing events
+INSERT INTO billing_daily_rollups (user_id, day, event_count, billed_amount, payment_amount, bonus_amount,
+        unsettled_amount)
+SELECT user_id, CAST(event_date AS DATE), COUNT(*), SUM(amount),
+       COALESCE(SUM(amount) FILTER (WHERE settled AND settlement_type IS DISTINCT FROM 'BONUS'), 0),
+       COALESCE(SUM(amount) FILTER (WHERE settled AND settlement_type = 'BONUS'), 0),
+       COALESCE(SUM(amount) FILTER (WHERE NOT settled), 0)
+FROM billing_events
+GROUP BY user_id, CAST(event_date AS DATE)
+ON CONFLICT (user_id, day) DO NOTHING;
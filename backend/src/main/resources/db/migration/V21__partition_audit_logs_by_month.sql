@@ -0,0 +1,54 @@
+-- Convert audit_logs to a table range-partitioned by month on created_at.
+-- Partitions are named audit_logs_YYYY_MM; AuditPartitionMaintainer creates
+-- upcoming months and drops whole months past the retention period.
+ALTER TABLE audit_logs RENAME TO audit_logs_legacy;
+-- Move V2's index names out of the way so the keyset indexes below are
+-- really created on the new table rather than skipped by IF NOT EXISTS
+ALTER INDEX IF EXISTS audit_logs_pkey RENAME TO audit_logs_legacy_pkey;
+ALTER INDEX IF EXISTS idx_audit_logs_actor RENAME TO idx_audit_logs_legacy_actor;
+ALTER INDEX IF EXISTS idx_audit_logs_created RENAME TO idx_audit_logs_legacy_created;
+
+-- Keep the id sequence when the legacy table is dropped below
+ALTER SEQUENCE audit_logs_id_seq OWNED BY NONE;
+
+-- The primary key must include the partition key. actor_id carries no
+-- foreign key so the trail survives the deletion of the acting user.
+CREATE TABLE audit_logs (
+    id BIGINT NOT NULL DEFAULT nextval('audit_logs_id_seq'),
+    actor_id BIGINT,
+    action VARCHAR(100) NOT NULL,
+    target_type VARCHAR(50),
+    target_id BIGINT,
+    metadata TEXT,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (id, created_at)
+) PARTITION BY RANGE (created_at);
+
+ALTER SEQUENCE audit_logs_id_seq OWNED BY audit_logs.id;
+
+-- Monthly partitions from the oldest existing row through three months ahead
+DO $$
+DECLARE
+    m DATE;
+    last_month DATE := date_trunc('month', CURRENT_DATE + INTERVAL '3 months')::date;
+BEGIN
+    SELECT date_trunc('month', LEAST(COALESCE(MIN(created_at), CURRENT_TIMESTAMP), CURRENT_TIMESTAMP))::date
+        INTO m FROM audit_logs_legacy;
+    WHILE m <= last_month LOOP
+        EXECUTE format('CREATE TABLE IF NOT EXISTS %I PARTITION OF audit_logs FOR VALUES FROM (%L) TO (%L)',
+            'audit_logs_' || to_char(m, 'YYYY_MM'), m, (m + INTERVAL '1 month')::date);
+        m := (m + INTERVAL '1 month')::date;
+    END LOOP;
+END $$;
+
+INSERT INTO audit_logs (id, actor_id, action, target_type, target_id, metadata, created_at)
+SELECT id, actor_id, action, target_type, target_id, metadata, created_at FROM audit_logs_legacy;
+
+DROP TABLE audit_logs_legacy;
+
+-- Keyset reads (newest first) by actor, action and target; each index is
+-- created on every partition
+CREATE INDEX IF NOT EXISTS idx_audit_logs_actor ON audit_logs(actor_id, created_at DESC, id DESC);
+CREATE INDEX IF NOT EXISTS idx_audit_logs_action ON audit_logs(action, created_at DESC, id DESC);
+CREATE INDEX IF NOT EXISTS idx_audit_logs_target ON audit_logs(target_type, target_id, created_at DESC, id DESC);
+CREATE INDEX IF NOT EXISTS idx_audit_logs_created ON audit_logs(created_at DESC, id DESC);
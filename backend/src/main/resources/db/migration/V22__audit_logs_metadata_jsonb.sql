@@ -0,0 +1,5 @@
+-- Store audit metadata as jsonb (writers always produced JSON objects) and
+-- index it for containment queries (metadata @> '{"bookingId": 123}')
+ALTER TABLE audit_logs ALTER COLUMN metadata TYPE JSONB USING CAST(NULLIF(metadata, '') AS JSONB);
+
+CREATE INDEX IF NOT EXISTS idx_audit_logs_metadata ON audit_logs USING GIN (metadata jsonb_path_ops);
@@ -0,0 +1,61 @@
+-- Make wallet_transactions the authoritative, append-only wallet ledger.
+-- users.wallet_balance becomes a projection maintained by a trigger on ledger
+-- inserts; balances and point-in-time balances are read from the nearest
+-- wallet_snapshots row plus the ledger entries after it.
+
+-- Opening entries reconcile each member's ledger with the balance held today
+-- (balances set before every change was logged)
+INSERT INTO wallet_transactions (user_id, amount, type, reference, created_at)
+SELECT u.id, u.wallet_balance - COALESCE(t.total, 0), 'OPENING', 'ledger-migration', NOW()
+FROM users u
+LEFT JOIN (SELECT user_id, SUM(amount) AS total FROM wallet_transactions GROUP BY user_id) t ON t.user_id = u.id
+WHERE u.wallet_balance <> COALESCE(t.total, 0);
+
+-- Tail replay: entries of one member after a snapshot, in id order
+CREATE INDEX IF NOT EXISTS idx_wallet_transactions_user_id ON wallet_transactions (user_id, id);
+
+-- balance = sum of the member's entries with id <= last_transaction_id;
+-- as_of is the created_at of that entry
+CREATE TABLE wallet_snapshots (
+    user_id BIGINT NOT NULL REFERENCES users(id),
+    last_transaction_id BIGINT NOT NULL,
+    balance NUMERIC(12,2) NOT NULL,
+    as_of TIMESTAMP NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT NOW(),
+    PRIMARY KEY (user_id, last_transaction_id)
+);
+
+CREATE INDEX idx_wallet_snapshots_user_as_of ON wallet_snapshots (user_id, as_of DESC);
+
+INSERT INTO wallet_snapshots (user_id, last_transaction_id, balance, as_of)
+SELECT user_id, MAX(id), SUM(amount), MAX(created_at)
+FROM wallet_transactions
+GROUP BY user_id;
+
+-- Ledger entries are never changed or removed; corrections are new entries
+CREATE OR REPLACE FUNCTION wallet_transactions_append_only() RETURNS trigger AS $$
+BEGIN
+    RAISE EXCEPTION 'wallet_transactions is append-only; record a correcting entry instead';
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER trg_wallet_transactions_append_only
+    BEFORE UPDATE OR DELETE ON wallet_transactions
+    FOR EACH ROW EXECUTE FUNCTION wallet_transactions_append_only();
+
+CREATE TRIGGER trg_wallet_transactions_no_truncate
+    BEFORE TRUNCATE ON wallet_transactions
+    FOR EACH STATEMENT EXECUTE FUNCTION wallet_transactions_append_only();
+
+-- Every entry moves the cached balance by its amount in the same transaction,
+-- so the two cannot drift apart
+CREATE OR REPLACE FUNCTION wallet_transactions_apply_balance() RETURNS trigger AS $$
+BEGIN
+    UPDATE users SET wallet_balance = wallet_balance + NEW.amount WHERE id = NEW.user_id;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER trg_wallet_transactions_apply_balance
+    AFTER INSERT ON wallet_transactions
+    FOR EACH ROW EXECUTE FUNCTION wallet_transactions_apply_balance();
@@ -0,0 +1,6 @@
+-- Keyset pages of a member's wallet history, newest first on (created_at, id)
+CREATE INDEX IF NOT EXISTS idx_wallet_transactions_user_created_id
+    ON wallet_transactions (user_id, created_at DESC, id DESC);
+
+-- Superseded by the index above
+DROP INDEX IF EXISTS idx_wallet_transactions_user_created;
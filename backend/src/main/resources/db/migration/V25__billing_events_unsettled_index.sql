@@ -0,0 +1,3 @@
+-- Oldest-first scan of a member's open events for the settlement sweeper
+CREATE INDEX IF NOT EXISTS idx_billing_events_unsettled
+    ON billing_events (user_id, event_date, id) WHERE settled = FALSE;
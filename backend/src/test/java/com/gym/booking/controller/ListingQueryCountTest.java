@@ -0,0 +1,180 @@
+package com.gym.booking.controller;
+
+import com.gym.booking.PostgresIntegrationTest;
+import com.gym.booking.model.Booking;
+import com.gym.booking.model.ClassType;
+import com.gym.booking.model.GymClass;
+import com.gym.booking.model.User;
+import com.gym.booking.repository.BookingRepository;
+import com.gym.booking.repository.ClassTypeRepository;
+import com.gym.booking.repository.GymClassRepository;
+import com.gym.booking.repository.UserRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.request.RequestPostProcessor;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.jwt;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * The listing endpoints must not load associations row by row: each one is
+ * measured with a couple of rows and again after many more were added, and
+ * the number of JDBC statements Hibernate prepared has to stay the same.
+ */
+@AutoConfigureMockMvc
+class ListingQueryCountTest extends PostgresIntegrationTest {
+
+    private static final int FEW = 2;
+    private static final int MANY = 30;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ClassTypeRepository classTypeRepository;
+
+    @Autowired
+    private GymClassRepository gymClassRepository;
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    private Statistics statistics;
+    private String run;
+    private User trainer;
+    private User member;
+    private ClassType classType;
+    private LocalDateTime firstStart;
+    private int classCount;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        run = UUID.randomUUID().toString().substring(0, 8);
+        trainer = saveUser("trainer", User.UserRole.TRAINER);
+        member = saveUser("member", User.UserRole.MEMBER);
+        classType = new ClassType();
+        classType.setName("Listing " + run);
+        classType = classTypeRepository.save(classType);
+        firstStart = LocalDateTime.now().plusYears(1).truncatedTo(ChronoUnit.HOURS);
+        classCount = 0;
+    }
+
+    @Test
+    void classListingsPrepareAConstantNumberOfStatements() throws Exception {
+        MockHttpServletRequestBuilder all = get("/api/classes").param("all", "true");
+        MockHttpServletRequestBuilder page = get("/api/classes")
+                .param("from", firstStart.toString())
+                .param("limit", "500");
+        MockHttpServletRequestBuilder byTrainer = get("/api/classes/trainer/{id}", trainer.getId())
+                .with(asAdmin());
+
+        addBookedClasses(FEW);
+        long allFew = statementsFor(all);
+        long pageFew = statementsFor(page);
+        long byTrainerFew = statementsFor(byTrainer);
+
+        addBookedClasses(MANY);
+        assertThat(statementsFor(all)).isEqualTo(allFew);
+        assertThat(statementsFor(page)).isEqualTo(pageFew);
+        assertThat(statementsFor(byTrainer)).isEqualTo(byTrainerFew);
+    }
+
+    @Test
+    void bookingListingsPrepareAConstantNumberOfStatements() throws Exception {
+        GymClass gymClass = saveClass();
+        MockHttpServletRequestBuilder byUser = get("/api/bookings/user/{id}", member.getId()).with(asAdmin());
+        MockHttpServletRequestBuilder byClass = get("/api/bookings/class/{id}", gymClass.getId()).with(asAdmin());
+
+        addBookedClasses(FEW);
+        addAttendees(gymClass, FEW);
+        long byUserFew = statementsFor(byUser);
+        long byClassFew = statementsFor(byClass);
+
+        addBookedClasses(MANY);
+        addAttendees(gymClass, MANY);
+        assertThat(statementsFor(byUser)).isEqualTo(byUserFew);
+        assertThat(statementsFor(byClass)).isEqualTo(byClassFew);
+    }
+
+    // One warm-up call (principal cache, query plans), then the measured one
+    private long statementsFor(MockHttpServletRequestBuilder request) throws Exception {
+        mockMvc.perform(request).andExpect(status().isOk());
+        statistics.clear();
+        mockMvc.perform(request).andExpect(status().isOk());
+        long statements = statistics.getPrepareStatementCount();
+        assertThat(statements).isPositive();
+        return statements;
+    }
+
+    private static RequestPostProcessor asAdmin() {
+        return jwt()
+                .jwt(token -> token.subject("listing-admin")
+                        .claim("email", "listing-admin@example.com")
+                        .claim("roles", List.of("ADMIN")))
+                .authorities(new SimpleGrantedAuthority("ROLE_ADMIN"));
+    }
+
+    private void addBookedClasses(int count) {
+        for (int i = 0; i < count; i++) {
+            saveBooking(member, saveClass());
+        }
+    }
+
+    private void addAttendees(GymClass gymClass, int count) {
+        for (int i = 0; i < count; i++) {
+            saveBooking(saveUser("attendee", User.UserRole.MEMBER), gymClass);
+        }
+    }
+
+    private User saveUser(String kind, User.UserRole role) {
+        String handle = kind + "-" + run + "-" + UUID.randomUUID().toString().substring(0, 8);
+        User user = new User();
+        user.setName(handle);
+        user.setEmail(handle + "@example.com");
+        user.setRole(role);
+        return userRepository.save(user);
+    }
+
+    private GymClass saveClass() {
+        LocalDateTime start = firstStart.plusHours(classCount++);
+        GymClass gymClass = new GymClass();
+        gymClass.setClassType(classType);
+        gymClass.setTrainer(trainer);
+        gymClass.setCapacity(100);
+        gymClass.setDurationMinutes(60);
+        gymClass.setStartTime(start);
+        gymClass.setEndTime(start.plusMinutes(60));
+        gymClass.setLocation("Studio " + run);
+        return gymClassRepository.save(gymClass);
+    }
+
+    private void saveBooking(User user, GymClass gymClass) {
+        Booking booking = new Booking();
+        booking.setUser(user);
+        booking.setClassInstance(gymClass);
+        booking.setStatus(Booking.BookingStatus.BOOKED);
+        bookingRepository.save(booking);
+    }
+}
@@ -0,0 +1,88 @@
+package com.gym.booking.service;
+
+import com.gym.booking.PostgresIntegrationTest;
+import com.gym.booking.model.Booking;
+import com.gym.booking.model.ClassType;
+import com.gym.booking.model.GymClass;
+import com.gym.booking.model.User;
+import com.gym.booking.repository.ClassTypeRepository;
+import com.gym.booking.repository.GymClassRepository;
+import com.gym.booking.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The admission gate may under-count free seats (a reconcile overwrote a
+ * release, another node freed the seat). A request it rejects must still get
+ * a seat the database has, instead of being parked on the waitlist.
+ */
+class BookingAdmissionServiceTest extends PostgresIntegrationTest {
+
+    @Autowired
+    private BookingAdmissionService bookingAdmissionService;
+
+    @Autowired
+    private SeatAdmissionGate seatAdmissionGate;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ClassTypeRepository classTypeRepository;
+
+    @Autowired
+    private GymClassRepository gymClassRepository;
+
+    @Test
+    void gateRejectedRequestTakesAFreeSeat() {
+        GymClass gymClass = saveClass(2);
+        Long classId = gymClass.getId();
+        // Stale gate: both permits gone while the database still has both seats
+        assertThat(seatAdmissionGate.tryAcquire(classId)).isTrue();
+        assertThat(seatAdmissionGate.tryAcquire(classId)).isTrue();
+        assertThat(seatAdmissionGate.tryAcquire(classId)).isFalse();
+
+        Booking first = bookingAdmissionService.admit(classId, () -> saveMember().getId());
+        Booking second = bookingAdmissionService.admit(classId, () -> saveMember().getId());
+        Booking third = bookingAdmissionService.admit(classId, () -> saveMember().getId());
+
+        assertThat(first.getStatus()).isEqualTo(Booking.BookingStatus.BOOKED);
+        assertThat(second.getStatus()).isEqualTo(Booking.BookingStatus.BOOKED);
+        assertThat(third.getStatus()).isEqualTo(Booking.BookingStatus.WAITLISTED);
+        assertThat(gymClassRepository.findById(classId).orElseThrow().getBookedCount()).isEqualTo(2);
+    }
+
+    private User saveMember() {
+        String handle = "admission-" + UUID.randomUUID().toString().substring(0, 8);
+        User user = new User();
+        user.setName(handle);
+        user.setEmail(handle + "@example.com");
+        user.setRole(User.UserRole.MEMBER);
+        return userRepository.save(user);
+    }
+
+    private GymClass saveClass(int capacity) {
+        String handle = "admission-" + UUID.randomUUID().toString().substring(0, 8);
+        User trainer = new User();
+        trainer.setName(handle);
+        trainer.setEmail(handle + "@example.com");
+        trainer.setRole(User.UserRole.TRAINER);
+        ClassType classType = new ClassType();
+        classType.setName("Admission " + handle);
+        LocalDateTime start = LocalDateTime.now().plusDays(7).truncatedTo(ChronoUnit.HOURS);
+        GymClass gymClass = new GymClass();
+        gymClass.setClassType(classTypeRepository.save(classType));
+        gymClass.setTrainer(userRepository.save(trainer));
+        gymClass.setCapacity(capacity);
+        gymClass.setDurationMinutes(60);
+        gymClass.setStartTime(start);
+        gymClass.setEndTime(start.plusMinutes(60));
+        return gymClassRepository.save(gymClass);
+    }
+}
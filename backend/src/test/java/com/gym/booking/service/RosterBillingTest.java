@@ -0,0 +1,255 @@
+package com.gym.booking.service;
+
+import com.gym.booking.PostgresIntegrationTest;
+import com.gym.booking.dto.BulkSettlementResultDTO;
+import com.gym.booking.dto.RosterCompletionResultDTO;
+import com.gym.booking.model.Booking;
+import com.gym.booking.model.GymClass;
+import com.gym.booking.model.User;
+import com.gym.booking.repository.BookingRepository;
+import com.gym.booking.repository.GymClassRepository;
+import com.gym.booking.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Roster completion and the settlement sweep run as data-modifying CTEs
+ * (bookings, wallet ledger, billing events, rollups). Each test checks what
+ * ends up in the tables: wallet balances, billing_events rows and the daily
+ * rollup buckets.
+ */
+class RosterBillingTest extends PostgresIntegrationTest {
+
+    private static final BigDecimal PRICE = new BigDecimal("10.00");
+
+    @Autowired
+    private BookingService bookingService;
+
+    @Autowired
+    private BillingService billingService;
+
+    @Autowired
+    private WalletService walletService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private GymClassRepository gymClassRepository;
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private String run;
+    private User trainer;
+    private int classCount;
+
+    @BeforeEach
+    void setUp() {
+        run = UUID.randomUUID().toString().substring(0, 8);
+        trainer = saveUser("trainer", User.UserRole.TRAINER, 0);
+        classCount = 0;
+    }
+
+    @Test
+    void rosterCompletionChargesAttendeesAndSkipsNoShows() {
+        User paying = saveMember(0);
+        User partial = saveMember(0);
+        User bonus = saveMember(1);
+        User absent = saveMember(0);
+        walletService.topUp(paying.getId(), new BigDecimal("25.00"), "roster-test");
+        walletService.topUp(partial.getId(), new BigDecimal("4.00"), "roster-test");
+        walletService.topUp(absent.getId(), PRICE, "roster-test");
+
+        GymClass gymClass = saveClass();
+        Booking payingBooking = saveBooking(paying, gymClass);
+        Booking partialBooking = saveBooking(partial, gymClass);
+        Booking bonusBooking = saveBooking(bonus, gymClass);
+        Booking absentBooking = saveBooking(absent, gymClass);
+
+        RosterCompletionResultDTO result = bookingService.completeRoster(gymClass.getId(),
+                List.of(payingBooking.getId(), partialBooking.getId(), bonusBooking.getId()),
+                List.of(absentBooking.getId()));
+
+        assertThat(result.getCompleted()).isEqualTo(3);
+        assertThat(result.getNoShows()).isEqualTo(1);
+        assertThat(result.getChargesCreated()).isEqualTo(3);
+        assertThat(result.getChargesSettled()).isEqualTo(2);
+        assertThat(result.getWalletCharged()).isEqualByComparingTo("14.00");
+        assertThat(result.getSkippedBookingIds()).isEmpty();
+
+        assertThat(status(payingBooking)).isEqualTo("COMPLETED");
+        assertThat(status(absentBooking)).isEqualTo("NO_SHOW");
+
+        // Paid in full, partly paid (4.00 of 10.00), covered by a bonus day
+        assertThat(balance(paying)).isEqualByComparingTo("15.00");
+        assertThat(balance(partial)).isEqualByComparingTo("0.00");
+        assertThat(balance(bonus)).isEqualByComparingTo("0.00");
+        assertThat(userRepository.findById(bonus.getId()).orElseThrow().getBonusDays()).isZero();
+        assertThat(ledgerTypes(partial)).containsExactly("TOPUP", "CHARGE_PARTIAL");
+
+        assertEvent(payingBooking, PRICE, true, "PAYMENT");
+        assertEvent(partialBooking, PRICE, false, "NONE");
+        assertEvent(bonusBooking, PRICE, true, "BONUS");
+
+        // No-shows are not billed by default: no event, wallet untouched
+        assertThat(eventCount(absent)).isZero();
+        assertThat(balance(absent)).isEqualByComparingTo(PRICE);
+
+        assertRollup(paying, 1, "10.00", "10.00", "0.00", "0.00");
+        assertRollup(partial, 1, "10.00", "0.00", "0.00", "10.00");
+        assertRollup(bonus, 1, "10.00", "0.00", "10.00", "0.00");
+        assertThat(rollupCount(absent)).isZero();
+
+        // Completing the same roster again changes nothing
+        RosterCompletionResultDTO again = bookingService.completeRoster(gymClass.getId(),
+                List.of(payingBooking.getId()), List.of(absentBooking.getId()));
+        assertThat(again.getChargesCreated()).isZero();
+        assertThat(again.getSkippedBookingIds()).containsExactly(payingBooking.getId(), absentBooking.getId());
+        assertThat(balance(paying)).isEqualByComparingTo("15.00");
+    }
+
+    @Test
+    void sweepPaysOpenEventsOldestFirstAsFarAsTheWalletGoes() {
+        User member = saveMember(0);
+        walletService.topUp(member.getId(), new BigDecimal("4.00"), "sweep-test");
+        Booking first = saveBooking(member, saveClass());
+        Booking second = saveBooking(member, saveClass());
+        bookingService.completeRoster(first.getClassInstance().getId(), List.of(first.getId()), List.of());
+        bookingService.completeRoster(second.getClassInstance().getId(), List.of(second.getId()), List.of());
+        assertEvent(first, PRICE, false, "NONE");
+        assertEvent(second, PRICE, false, "NONE");
+        assertThat(balance(member)).isEqualByComparingTo("0.00");
+        assertRollup(member, 2, "20.00", "0.00", "0.00", "20.00");
+
+        // 6.00 is still due on the first event, 10.00 on the second; 10.00
+        // only covers the first
+        walletService.topUp(member.getId(), new BigDecimal("10.00"), "sweep-test");
+        assertThat(billingService.findUserIdsToSweep()).contains(member.getId());
+        BulkSettlementResultDTO firstSweep = billingService.settleFromWallet(member.getId());
+
+        assertThat(firstSweep.getSettled()).isEqualTo(1);
+        assertEvent(first, PRICE, true, "PAYMENT");
+        assertEvent(second, PRICE, false, "NONE");
+        assertThat(balance(member)).isEqualByComparingTo("4.00");
+        assertThat(jdbcTemplate.queryForObject("SELECT amount FROM wallet_transactions WHERE user_id = ? "
+                + "AND type = 'SETTLEMENT' AND reference = ?", BigDecimal.class, member.getId(),
+                "billing:" + eventId(first))).isEqualByComparingTo("-6.00");
+        assertRollup(member, 2, "20.00", "10.00", "0.00", "10.00");
+
+        walletService.topUp(member.getId(), new BigDecimal("6.00"), "sweep-test");
+        BulkSettlementResultDTO secondSweep = billingService.settleFromWallet(member.getId());
+
+        assertThat(secondSweep.getSettled()).isEqualTo(1);
+        assertEvent(second, PRICE, true, "PAYMENT");
+        assertThat(balance(member)).isEqualByComparingTo("0.00");
+        assertRollup(member, 2, "20.00", "20.00", "0.00", "0.00");
+        assertThat(billingService.findUserIdsToSweep()).doesNotContain(member.getId());
+
+        // Nothing left to pay: a further sweep settles nothing
+        walletService.topUp(member.getId(), PRICE, "sweep-test");
+        assertThat(billingService.settleFromWallet(member.getId()).getSettled()).isZero();
+        assertThat(balance(member)).isEqualByComparingTo(PRICE);
+    }
+
+    private void assertEvent(Booking booking, BigDecimal amount, boolean settled, String settlementType) {
+        Map<String, Object> event = jdbcTemplate.queryForMap(
+                "SELECT amount, settled, settlement_type FROM billing_events WHERE booking_id = ?", booking.getId());
+        assertThat((BigDecimal) event.get("amount")).isEqualByComparingTo(amount);
+        assertThat(event.get("settled")).isEqualTo(settled);
+        assertThat(event.get("settlement_type")).isEqualTo(settlementType);
+    }
+
+    // Every event of these tests falls on the same day, so one row per member
+    private void assertRollup(User user, int eventCount, String billed, String payment, String bonus,
+            String unsettled) {
+        Map<String, Object> rollup = jdbcTemplate.queryForMap("SELECT event_count, billed_amount, payment_amount, "
+                + "bonus_amount, unsettled_amount FROM billing_daily_rollups WHERE user_id = ?", user.getId());
+        assertThat(((Number) rollup.get("event_count")).intValue()).isEqualTo(eventCount);
+        assertThat((BigDecimal) rollup.get("billed_amount")).isEqualByComparingTo(billed);
+        assertThat((BigDecimal) rollup.get("payment_amount")).isEqualByComparingTo(payment);
+        assertThat((BigDecimal) rollup.get("bonus_amount")).isEqualByComparingTo(bonus);
+        assertThat((BigDecimal) rollup.get("unsettled_amount")).isEqualByComparingTo(unsettled);
+    }
+
+    private BigDecimal balance(User user) {
+        return jdbcTemplate.queryForObject("SELECT wallet_balance FROM users WHERE id = ?", BigDecimal.class,
+                user.getId());
+    }
+
+    private List<String> ledgerTypes(User user) {
+        return jdbcTemplate.queryForList("SELECT type FROM wallet_transactions WHERE user_id = ? ORDER BY id",
+                String.class, user.getId());
+    }
+
+    private String status(Booking booking) {
+        return jdbcTemplate.queryForObject("SELECT status FROM bookings WHERE id = ?", String.class,
+                booking.getId());
+    }
+
+    private Long eventId(Booking booking) {
+        return jdbcTemplate.queryForObject("SELECT id FROM billing_events WHERE booking_id = ?", Long.class,
+                booking.getId());
+    }
+
+    private int eventCount(User user) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM billing_events WHERE user_id = ?", Integer.class,
+                user.getId());
+    }
+
+    private int rollupCount(User user) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM billing_daily_rollups WHERE user_id = ?",
+                Integer.class, user.getId());
+    }
+
+    private User saveMember(int bonusDays) {
+        return saveUser("member", User.UserRole.MEMBER, bonusDays);
+    }
+
+    private User saveUser(String kind, User.UserRole role, int bonusDays) {
+        String handle = kind + "-" + run + "-" + UUID.randomUUID().toString().substring(0, 8);
+        User user = new User();
+        user.setName(handle);
+        user.setEmail(handle + "@example.com");
+        user.setRole(role);
+        user.setGroupBaseCost(PRICE);
+        user.setBonusDays(bonusDays);
+        return userRepository.save(user);
+    }
+
+    private GymClass saveClass() {
+        LocalDateTime start = LocalDateTime.now().minusDays(1).truncatedTo(ChronoUnit.HOURS)
+                .minusHours(classCount++);
+        GymClass gymClass = new GymClass();
+        gymClass.setTrainer(trainer);
+        gymClass.setKind(GymClass.ClassKind.GROUP);
+        gymClass.setCapacity(10);
+        gymClass.setDurationMinutes(60);
+        gymClass.setStartTime(start);
+        gymClass.setEndTime(start.plusMinutes(60));
+        gymClass.setLocation("Studio " + run);
+        return gymClassRepository.save(gymClass);
+    }
+
+    private Booking saveBooking(User user, GymClass gymClass) {
+        Booking booking = new Booking();
+        booking.setUser(user);
+        booking.setClassInstance(gymClass);
+        booking.setStatus(Booking.BookingStatus.BOOKED);
+        return bookingRepository.save(booking);
+    }
+}
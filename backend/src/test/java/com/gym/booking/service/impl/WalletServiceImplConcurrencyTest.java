@@ -0,0 +1,94 @@
+package com.gym.booking.service.impl;
+
+import com.gym.booking.PostgresIntegrationTest;
+import com.gym.booking.model.User;
+import com.gym.booking.repository.UserRepository;
+import com.gym.booking.service.WalletService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Many charges against one wallet at the same time: every debit has to be
+ * applied exactly once, the balance may never go negative, and the cached
+ * balance has to match the ledger it is projected from.
+ */
+class WalletServiceImplConcurrencyTest extends PostgresIntegrationTest {
+
+    private static final int CHARGES = 40;
+    private static final BigDecimal TOP_UP = new BigDecimal("100.00");
+    private static final BigDecimal PRICE = new BigDecimal("3.00");
+
+    @Autowired
+    private WalletService walletService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void parallelChargesLoseNoUpdates() throws Exception {
+        Long userId = saveMember().getId();
+        walletService.topUp(userId, TOP_UP, "concurrency-test");
+
+        List<WalletService.WalletChargeResult> results = chargeInParallel(userId);
+
+        // 33 charges of 3.00 fit into 100.00, one more takes the last 1.00
+        BigDecimal charged = results.stream()
+                .map(WalletService.WalletChargeResult::chargedAmount)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        long fullySettled = results.stream().filter(WalletService.WalletChargeResult::fullySettled).count();
+        assertThat(charged).isEqualByComparingTo(TOP_UP);
+        assertThat(fullySettled).isEqualTo(33);
+
+        BigDecimal balance = jdbcTemplate.queryForObject(
+                "SELECT wallet_balance FROM users WHERE id = ?", BigDecimal.class, userId);
+        BigDecimal ledger = jdbcTemplate.queryForObject(
+                "SELECT COALESCE(SUM(amount), 0) FROM wallet_transactions WHERE user_id = ?", BigDecimal.class,
+                userId);
+        assertThat(balance).isEqualByComparingTo(BigDecimal.ZERO);
+        assertThat(ledger).isEqualByComparingTo(balance);
+        assertThat(walletService.getBalance(userId)).isEqualByComparingTo(balance);
+    }
+
+    private List<WalletService.WalletChargeResult> chargeInParallel(Long userId) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<WalletService.WalletChargeResult>> futures = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(CHARGES)) {
+            for (int i = 0; i < CHARGES; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return walletService.chargeForBooking(userId, PRICE, null);
+                }));
+            }
+            start.countDown();
+            List<WalletService.WalletChargeResult> results = new ArrayList<>();
+            for (Future<WalletService.WalletChargeResult> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        }
+    }
+
+    private User saveMember() {
+        String handle = "wallet-" + UUID.randomUUID().toString().substring(0, 8);
+        User user = new User();
+        user.setName(handle);
+        user.setEmail(handle + "@example.com");
+        user.setRole(User.UserRole.MEMBER);
+        return userRepository.save(user);
+    }
+}
@@ -27,3 +27,21 @@ export interface BillingReport {
   bonusDays: number;
   events: BillingEventSummary[];
 }
+
+// Totals from the daily billing rollups: per member (day unset) or per day
+export interface BillingSummary {
+  userId?: number;
+  day?: string;
+  eventCount: number;
+  billedAmount: number;
+  paymentAmount: number;
+  bonusAmount: number;
+  unsettledAmount: number;
+}
+
+export interface BulkSettlementResult {
+  settled: number;
+  alreadySettled: number;
+  notFound: number;
+  events: { eventId: number; outcome: 'SETTLED' | 'ALREADY_SETTLED' | 'NOT_FOUND' }[];
+}
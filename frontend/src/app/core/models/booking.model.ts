@@ -7,6 +7,36 @@ export interface Booking {
     bookedAt?: string;
     cancelledAt?: string;
     completedAt?: string;
+    waitlistPosition?: number;
+}
+
+// Returned (HTTP 202) when the backend serves a class in queued booking mode
+export interface BookingTicket {
+    ticketId: string;
+    classInstanceId: number;
+    status: 'PENDING' | 'BOOKED' | 'WAITLISTED' | 'REJECTED';
+    bookingId?: number;
+    message?: string;
+}
+
+// Registration for a lottery-allocated class
+export interface LotteryEntry {
+    id: number;
+    userId: number;
+    classInstanceId: number;
+    lotteryClosesAt: string;
+    entries: number;
+    enteredAt: string;
+}
+
+export interface RosterCompletionResult {
+    classInstanceId: number;
+    completed: number;
+    noShows: number;
+    skippedBookingIds: number[];
+    chargesCreated: number;
+    chargesSettled: number;
+    walletCharged: number;
 }
 
 export enum BookingStatus {
@@ -14,5 +44,6 @@ export enum BookingStatus {
     COMPLETED = 'COMPLETED',
     CANCELLED_BY_USER = 'CANCELLED_BY_USER',
     CANCELLED_BY_GYM = 'CANCELLED_BY_GYM',
-    NO_SHOW = 'NO_SHOW'
+    NO_SHOW = 'NO_SHOW',
+    WAITLISTED = 'WAITLISTED'
 }
\ No newline at end of file
@@ -11,6 +11,10 @@ export interface GymClass {
     classTypeId: number;
     status: ClassStatus;
     kind: ClassKind;
+    allocationMode?: AllocationMode;
+    lotteryClosesAt?: string | null;
+    bookedCount?: number;
+    remainingSeats?: number;
 }
 
 export enum ClassStatus {
@@ -19,6 +23,19 @@ export enum ClassStatus {
     COMPLETED = 'COMPLETED'
 }
 
+export enum AllocationMode {
+    FIRST_COME = 'FIRST_COME',
+    LOTTERY = 'LOTTERY'
+}
+
+export interface FacilityClosureResult {
+    from: string;
+    to: string;
+    cancelledClassIds: number[];
+    cancelledBookings: number;
+    affectedMemberIds: number[];
+}
+
 export enum ClassKind {
     GROUP = 'GROUP',
     SMALL_GROUP = 'SMALL_GROUP',
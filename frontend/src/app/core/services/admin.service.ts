@@ -3,7 +3,8 @@ import { HttpClient, HttpParams } from '@angular/common/http';
 import { Observable } from 'rxjs';
 import { environment } from '../../../environments/environment';
 import { User } from '../models/user.model';
-import { BillingReport } from '../models/billing.model';
+import { BillingReport, BillingSummary, BulkSettlementResult } from '../models/billing.model';
+import { FacilityClosureResult } from '../models/gym-class.model';
 
 @Injectable({
   providedIn: 'root'
@@ -57,9 +58,35 @@ export class AdminService {
     return this.http.get<BillingReport[]>(`${this.apiUrl}/billing/all`, { params });
   }
 
+  getBillingSummary(startDate: string, endDate: string, userId?: number): Observable<BillingSummary[]> {
+    let params = new HttpParams()
+      .set('startDate', this.toStartOfDayDateTime(startDate))
+      .set('endDate', this.toEndOfDayDateTime(endDate));
+    if (userId != null) params = params.set('userId', userId.toString());
+    return this.http.get<BillingSummary[]>(`${this.apiUrl}/billing/summary`, { params });
+  }
+
+  getDailyBillingSummary(startDate: string, endDate: string, userId?: number): Observable<BillingSummary[]> {
+    let params = new HttpParams()
+      .set('startDate', this.toStartOfDayDateTime(startDate))
+      .set('endDate', this.toEndOfDayDateTime(endDate));
+    if (userId != null) params = params.set('userId', userId.toString());
+    return this.http.get<BillingSummary[]>(`${this.apiUrl}/billing/summary/daily`, { params });
+  }
+
   // Billing: mark events settled
-  settleBillingEvents(eventIds: number[]): Observable<void> {
-    return this.http.post<void>(`${this.apiUrl}/billing/settle`, eventIds);
+  settleBillingEvents(eventIds: number[], idempotencyKey: string = crypto.randomUUID()): Observable<BulkSettlementResult> {
+    return this.http.post<BulkSettlementResult>(`${this.apiUrl}/billing/settle`, eventIds,
+      { headers: { 'Idempotency-Key': idempotencyKey } });
+  }
+
+  // Settle every unsettled event of a member dated before the given day
+  settleUnsettledBefore(userId: number, before: string,
+    idempotencyKey: string = crypto.randomUUID()): Observable<BulkSettlementResult> {
+    return this.http.post<BulkSettlementResult>(`${this.apiUrl}/billing/settle/unsettled`, null, {
+      params: { userId: userId.toString(), before },
+      headers: { 'Idempotency-Key': idempotencyKey }
+    });
   }
 
   settleBillingEventAsPayment(eventId: number): Observable<void> {
@@ -70,6 +97,15 @@ export class AdminService {
     return this.http.post<void>(`${this.apiUrl}/billing/events/${eventId}/settle/bonus`, {});
   }
 
+  // Cancel every scheduled class and its bookings between the two days (inclusive)
+  closeFacility(startDate: string, endDate: string,
+    idempotencyKey: string = crypto.randomUUID()): Observable<FacilityClosureResult> {
+    return this.http.post<FacilityClosureResult>(`${this.apiUrl}/facility/closures`, null, {
+      params: { startDate: this.toStartOfDayDateTime(startDate), endDate: this.toEndOfDayDateTime(endDate) },
+      headers: { 'Idempotency-Key': idempotencyKey }
+    });
+  }
+
   // Instructors
   getTrainers(): Observable<User[]> {
     return this.http.get<User[]>(`${this.apiUrl}/trainers`);
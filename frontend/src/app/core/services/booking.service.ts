@@ -1,7 +1,8 @@
 import { Injectable } from '@angular/core';
 import { HttpClient } from '@angular/common/http';
-import { Observable } from 'rxjs';
-import { Booking } from '../models/booking.model';
+import { Observable, of, throwError } from 'rxjs';
+import { expand, filter, switchMap, take } from 'rxjs/operators';
+import { Booking, BookingStatus, BookingTicket, LotteryEntry, RosterCompletionResult } from '../models/booking.model';
 import { environment } from '../../../environments/environment';
 
 @Injectable({
@@ -13,19 +14,52 @@ export class BookingService {
   constructor(private http: HttpClient) { }
 
   // When authenticated with Keycloak, backend derives the current user from JWT; only pass classInstanceId
-  createBooking(classInstanceId: number): Observable<Booking> {
-    return this.http.post<Booking>(this.apiUrl, null, {
-      params: { classInstanceId: classInstanceId.toString() }
-    });
+  // Pass the same idempotencyKey when retrying so the server books only once
+  createBooking(classInstanceId: number, idempotencyKey: string = crypto.randomUUID()): Observable<Booking> {
+    return this.http.post<Booking | BookingTicket>(this.apiUrl, null, {
+      params: { classInstanceId: classInstanceId.toString() },
+      headers: { 'Idempotency-Key': idempotencyKey }
+    }).pipe(switchMap(res => this.resolveTicket(res)));
   }
 
   // Admin/Instructor booking on behalf of a user
-  createBookingForUser(classInstanceId: number, userId: number): Observable<Booking> {
-    return this.http.post<Booking>(this.apiUrl, null, {
-      params: { classInstanceId: classInstanceId.toString(), userId: userId.toString() }
+  createBookingForUser(classInstanceId: number, userId: number,
+    idempotencyKey: string = crypto.randomUUID()): Observable<Booking> {
+    return this.http.post<Booking | BookingTicket>(this.apiUrl, null, {
+      params: { classInstanceId: classInstanceId.toString(), userId: userId.toString() },
+      headers: { 'Idempotency-Key': idempotencyKey }
+    }).pipe(switchMap(res => this.resolveTicket(res)));
+  }
+
+  // Lottery classes: register for the draw; the result arrives later as a booking
+  enterLottery(classInstanceId: number): Observable<LotteryEntry> {
+    return this.http.post<LotteryEntry>(`${this.apiUrl}/lottery`, null, {
+      params: { classInstanceId: classInstanceId.toString() }
     });
   }
 
+  // Hot classes are served in queued mode: long-poll the ticket until it is processed
+  private resolveTicket(res: Booking | BookingTicket): Observable<Booking> {
+    if (!('ticketId' in res)) {
+      return of(res);
+    }
+    const poll = (ticketId: string) =>
+      this.http.get<BookingTicket>(`${this.apiUrl}/tickets/${ticketId}`, { params: { waitSeconds: '20' } });
+    return of(res).pipe(
+      expand(t => t.status === 'PENDING' ? poll(t.ticketId) : of()),
+      filter(t => t.status !== 'PENDING'),
+      take(1),
+      switchMap(t => t.status === 'REJECTED'
+        ? throwError(() => ({ error: { message: t.message } }))
+        : of({
+            id: t.bookingId as number,
+            userId: 0,
+            classInstanceId: t.classInstanceId,
+            status: t.status === 'WAITLISTED' ? BookingStatus.WAITLISTED : BookingStatus.BOOKED
+          } as Booking))
+    );
+  }
+
   cancelBooking(id: number): Observable<void> {
     return this.http.put<void>(`${this.apiUrl}/${id}/cancel`, {});
   }
@@ -34,6 +68,12 @@ export class BookingService {
     return this.http.put<void>(`${this.apiUrl}/${id}/complete`, {});
   }
 
+  // Close a whole class at once; ids not listed stay BOOKED
+  completeRoster(classInstanceId: number, attended: number[], noShow: number[]): Observable<RosterCompletionResult> {
+    return this.http.post<RosterCompletionResult>(`${this.apiUrl}/class/${classInstanceId}/complete`,
+      { attended, noShow });
+  }
+
   getUserBookings(userId: number): Observable<Booking[]> {
     return this.http.get<Booking[]>(`${this.apiUrl}/user/${userId}`);
   }
@@ -1,6 +1,7 @@
 import { Injectable } from '@angular/core';
-import { HttpClient } from '@angular/common/http';
-import { Observable } from 'rxjs';
+import { HttpClient, HttpParams, HttpResponse } from '@angular/common/http';
+import { EMPTY, Observable, forkJoin, of } from 'rxjs';
+import { expand, map, reduce } from 'rxjs/operators';
 import { GymClass } from '../models/gym-class.model';
 import { environment } from '../../../environments/environment';
 
@@ -8,6 +9,7 @@ import { environment } from '../../../environments/environment';
   providedIn: 'root'
 })
 export class GymClassService {
+  private static readonly PAGE_SIZE = 200;
   private apiUrl = `${environment.apiUrl}/classes`;
 
   constructor(private http: HttpClient) { }
@@ -24,8 +26,69 @@ export class GymClassService {
     return this.http.delete<void>(`${this.apiUrl}/${id}`);
   }
 
+  // Full history (including past classes) in one unbounded response; only for
+  // screens that really need every class. Prefer getGymClassesInRange
   getAllGymClasses(): Observable<GymClass[]> {
-    return this.http.get<GymClass[]>(this.apiUrl);
+    return this.http.get<GymClass[]>(this.apiUrl, { params: { all: 'true' } });
+  }
+
+  // One page of classes starting in [from, to); follow the Link rel="next" header to continue
+  getGymClassesPage(params: {
+    from?: string; to?: string; kind?: string; classTypeId?: number; trainerId?: number;
+    afterStart?: string; afterId?: number; limit?: number;
+  }): Observable<HttpResponse<GymClass[]>> {
+    let httpParams = new HttpParams();
+    Object.entries(params).forEach(([key, value]) => {
+      if (value !== undefined && value !== null) httpParams = httpParams.set(key, String(value));
+    });
+    return this.http.get<GymClass[]>(this.apiUrl, { params: httpParams, observe: 'response' });
+  }
+
+  // Every class starting in [from, to) (from defaults to today on the server),
+  // following the rel="next" cursor until the window is exhausted
+  getGymClassesInRange(from?: Date | string, to?: Date | string,
+    filters: { kind?: string; classTypeId?: number; trainerId?: number } = {}): Observable<GymClass[]> {
+    const base = { ...filters, from: this.toParam(from), to: this.toParam(to), limit: GymClassService.PAGE_SIZE };
+    return this.getGymClassesPage(base).pipe(
+      expand(res => {
+        const next = this.nextCursor(res);
+        return next ? this.getGymClassesPage({ ...base, ...next }) : EMPTY;
+      }),
+      map(res => res.body ?? []),
+      reduce((all, page) => all.concat(page), [] as GymClass[])
+    );
+  }
+
+  // Just the given classes, e.g. the ones behind a member's bookings
+  getGymClassesByIds(ids: number[]): Observable<GymClass[]> {
+    const unique = Array.from(new Set(ids));
+    if (unique.length === 0) return of([]);
+    const chunks: number[][] = [];
+    for (let i = 0; i < unique.length; i += GymClassService.PAGE_SIZE) {
+      chunks.push(unique.slice(i, i + GymClassService.PAGE_SIZE));
+    }
+    return forkJoin(chunks.map(chunk =>
+      this.http.get<GymClass[]>(this.apiUrl, { params: { ids: chunk.join(',') } })
+    )).pipe(map(pages => pages.flat()));
+  }
+
+  private nextCursor(res: HttpResponse<GymClass[]>): { afterStart: string; afterId: number } | null {
+    const link = res.headers.get('Link');
+    const match = link ? /<([^>]+)>\s*;\s*rel="next"/.exec(link) : null;
+    if (!match) return null;
+    const params = new URL(match[1], window.location.origin).searchParams;
+    const afterStart = params.get('afterStart');
+    const afterId = params.get('afterId');
+    return afterStart && afterId ? { afterStart, afterId: Number(afterId) } : null;
+  }
+
+  // The API takes local date-times (no zone)
+  private toParam(value?: Date | string): string | undefined {
+    if (value === undefined || value === null) return undefined;
+    if (typeof value === 'string') return value;
+    const pad = (n: number) => String(n).padStart(2, '0');
+    return `${value.getFullYear()}-${pad(value.getMonth() + 1)}-${pad(value.getDate())}`
+      + `T${pad(value.getHours())}:${pad(value.getMinutes())}:${pad(value.getSeconds())}`;
   }
 
   getGymClassesByTrainer(trainerId: number): Observable<GymClass[]> {
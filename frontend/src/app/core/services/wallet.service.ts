@@ -9,6 +9,13 @@ export interface WalletTransaction {
   type: string;
   reference?: string | null;
   createdAt?: string;
+  balanceAfter?: number | null;
+}
+
+export interface WalletBalance {
+  userId: number;
+  balance: number;
+  asOf?: string;
 }
 
 export interface UserWalletResponse {
@@ -26,15 +33,31 @@ export class WalletService {
   }
 
   // Admin
-  adminTopUp(memberId: number, amount: number, reference?: string) {
-    return this.http.post(`${this.base}/admin/members/${memberId}/wallet/topup`, { amount, reference });
+  // Idempotency-Key makes retried top-ups credit the wallet only once
+  adminTopUp(memberId: number, amount: number, reference?: string, idempotencyKey: string = crypto.randomUUID()) {
+    return this.http.post(`${this.base}/admin/members/${memberId}/wallet/topup`, { amount, reference },
+      { headers: { 'Idempotency-Key': idempotencyKey } });
+  }
+
+  adminSetBalance(memberId: number, amount: number, reference?: string, idempotencyKey: string = crypto.randomUUID()) {
+    return this.http.post(`${this.base}/admin/members/${memberId}/wallet/set`, { amount, reference },
+      { headers: { 'Idempotency-Key': idempotencyKey } });
   }
 
-  adminSetBalance(memberId: number, amount: number, reference?: string) {
-    return this.http.post(`${this.base}/admin/members/${memberId}/wallet/set`, { amount, reference });
+  // Balance from the ledger; pass asOf (ISO date-time) for a past balance
+  adminGetBalance(memberId: number, asOf?: string) {
+    const params: Record<string, string> = asOf ? { asOf } : {};
+    return this.http.get<WalletBalance>(`${this.base}/admin/members/${memberId}/wallet/balance`, { params });
   }
 
-  adminGetTransactions(memberId: number) {
-    return this.http.get<WalletTransaction[]>(`${this.base}/admin/members/${memberId}/wallet/transactions`);
+  // Newest page of history; pass the last entry's createdAt and id for the next one
+  adminGetTransactions(memberId: number, beforeAt?: string, beforeId?: number) {
+    const params: Record<string, string> = {};
+    if (beforeAt && beforeId != null) {
+      params['beforeAt'] = beforeAt;
+      params['beforeId'] = String(beforeId);
+    }
+    return this.http.get<WalletTransaction[]>(`${this.base}/admin/members/${memberId}/wallet/transactions`,
+      { params });
   }
 }
@@ -8,7 +8,8 @@ import { Booking, BookingStatus } from '../../core/models/booking.model';
 import { GymClass, ClassKind } from '../../core/models/gym-class.model';
 import { ClassType } from '../../core/models/class-type.model';
 import { UserService } from '../../core/services/user.service';
-import { forkJoin } from 'rxjs';
+import { forkJoin, of } from 'rxjs';
+import { map, switchMap } from 'rxjs/operators';
 import { TranslateModule, TranslateService } from '@ngx-translate/core';
 
 interface BookingWithDetails extends Booking {
@@ -58,12 +59,12 @@ export class ActivityHistoryComponent implements OnInit {
         next: (me) => {
           const myId = me?.id;
           forkJoin({
-            classes: this.gymClassService.getAllGymClasses(),
+            classes: myId != null ? this.gymClassService.getGymClassesByTrainer(myId) : of([] as GymClass[]),
             classTypes: this.classTypeService.getActiveClassTypes()
           }).subscribe({
             next: ({ classes, classTypes }) => {
               this.classTypes = classTypes;
-              this.classes = classes.filter(c => (c as any).trainerId === myId || (c as any).instructorId === myId);
+              this.classes = classes;
               this.isLoading = false;
             },
             error: (err) => {
@@ -80,11 +81,16 @@ export class ActivityHistoryComponent implements OnInit {
         }
       });
     } else {
+      // Only the classes behind the member's own bookings are fetched
       forkJoin({
         bookings: this.bookingService.getMyBookings(),
-        classes: this.gymClassService.getAllGymClasses(),
         classTypes: this.classTypeService.getActiveClassTypes()
-      }).subscribe({
+      }).pipe(
+        switchMap(({ bookings, classTypes }) =>
+          this.gymClassService.getGymClassesByIds(bookings.map(b => b.classInstanceId)).pipe(
+            map(classes => ({ bookings, classes, classTypes }))
+          ))
+      ).subscribe({
         next: ({ bookings, classes, classTypes }) => {
           this.classes = classes;
           this.classTypes = classTypes;
@@ -109,12 +109,19 @@ export class AdminBillingComponent implements OnInit {
     this.walletService.adminGetTransactions(memberId).subscribe({
       next: (txs) => {
         this.walletTransactions = txs;
-        // derive balance from transactions ledger (assumes ledger contains all ops)
-        this.walletBalance = txs.reduce((s, t) => s + (t.amount || 0), 0);
       },
       error: (err) => {
         console.error('Failed to load wallet transactions', err);
         this.walletTransactions = [];
+      }
+    });
+    // History is paged, so the balance comes from the ledger endpoint
+    this.walletService.adminGetBalance(memberId).subscribe({
+      next: (res) => {
+        this.walletBalance = res.balance;
+      },
+      error: (err) => {
+        console.error('Failed to load wallet balance', err);
         this.walletBalance = null;
       }
     });
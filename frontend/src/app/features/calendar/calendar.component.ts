@@ -2,7 +2,7 @@ import { Component, OnInit } from '@angular/core';
 import { CommonModule } from '@angular/common';
 import { FormsModule } from '@angular/forms';
 import { FullCalendarModule } from '@fullcalendar/angular';
-import { CalendarOptions, EventClickArg, EventInput } from '@fullcalendar/core';
+import { CalendarOptions, DatesSetArg, EventClickArg, EventInput } from '@fullcalendar/core';
 import dayGridPlugin from '@fullcalendar/daygrid';
 import timeGridPlugin from '@fullcalendar/timegrid';
 import interactionPlugin from '@fullcalendar/interaction';
@@ -13,6 +13,7 @@ import { BookingService } from '../../core/services/booking.service';
 import { KeycloakService } from '../../core/services/keycloak.service';
 import { GymClass, ClassKind } from '../../core/models/gym-class.model';
 import { ClassType } from '../../core/models/class-type.model';
+import { BookingStatus } from '../../core/models/booking.model';
 import { forkJoin } from 'rxjs';
 import { UserService } from '../../core/services/user.service';
 import { TranslateModule, TranslateService } from '@ngx-translate/core';
@@ -43,13 +44,16 @@ export class CalendarComponent implements OnInit {
   classTypes: ClassType[] = [];
   selectedClassTypeId: number | null = null;
   
-  // All classes from backend
+  // Classes in the visible calendar range
   allClasses: GymClass[] = [];
+  private visibleRange: { start: Date; end: Date } | null = null;
   
   isAdmin = false;
   isInstructor = false;
   isMember = false;
   private trainersMap: Map<number, string> = new Map();
+  // One Idempotency-Key per opened booking dialog, so double clicks book once
+  private bookingIdempotencyKey: string | null = null;
 
   constructor(
     private gymClassService: GymClassService,
@@ -94,6 +98,7 @@ export class CalendarComponent implements OnInit {
       contentHeight: 'auto',
       events: [],
       eventClick: this.handleEventClick.bind(this),
+      datesSet: this.handleDatesSet.bind(this),
       slotMinTime: '06:00:00',
       slotMaxTime: '22:00:00',
       nowIndicator: true,
@@ -116,12 +121,10 @@ export class CalendarComponent implements OnInit {
 
   loadData(): void {
     forkJoin({
-      classes: this.gymClassService.getAllGymClasses(),
       classTypes: this.classTypeService.getActiveClassTypes(),
       trainers: this.users.getAllTrainers()
     }).subscribe({
-      next: ({ classes, classTypes, trainers }) => {
-        this.allClasses = classes;
+      next: ({ classTypes, trainers }) => {
         this.classTypes = classTypes;
         // Build trainers map (id -> display name)
         this.trainersMap = new Map(
@@ -136,6 +139,34 @@ export class CalendarComponent implements OnInit {
     });
   }
 
+  // The calendar reports every range it shows (initial render, prev/next,
+  // view switch); only that window of classes is fetched
+  handleDatesSet(arg: DatesSetArg): void {
+    const range = this.visibleRange;
+    if (range && range.start.getTime() === arg.start.getTime() && range.end.getTime() === arg.end.getTime()) {
+      return;
+    }
+    this.visibleRange = { start: arg.start, end: arg.end };
+    this.loadClasses();
+  }
+
+  loadClasses(): void {
+    if (!this.visibleRange) return;
+    const { start, end } = this.visibleRange;
+    this.gymClassService.getGymClassesInRange(start, end).subscribe({
+      next: (classes) => {
+        // Ignore a late response for a range the user already left
+        if (this.visibleRange?.start !== start) return;
+        this.allClasses = classes;
+        this.filterAndUpdateCalendar();
+      },
+      error: (err) => {
+        console.error('Error loading classes:', err);
+        alert(this.translate.instant('calendar.errors.loadData'));
+      }
+    });
+  }
+
   onClassTypeFilterChange(): void {
     this.filterAndUpdateCalendar();
   }
@@ -199,45 +230,46 @@ export class CalendarComponent implements OnInit {
     if (!selectedClass) return;
     
     this.selectedClass = selectedClass;
+    this.bookingIdempotencyKey = crypto.randomUUID();
     
-    // Load booking count for this class (public endpoint)
-    this.bookingService.getClassBookingsCount(classId).subscribe({
-      next: (count) => {
-        this.bookingCount = count;
-        this.modalMode = 'view';
-        this.showModal = true;
-        // If user is authenticated, fetch profile to compute wallet/bonus eligibility
-        if (this.kc.isReady() && this.kc.isAuthenticated()) {
-          this.users.getMe().subscribe({
-            next: (me) => {
-              this.currentUser = me as User;
-              // Compute charge amount based on user's per-kind costs
-              const kind = selectedClass.kind as string;
-              const amount = this.resolveChargeAmountFromUser(this.currentUser, kind);
-              this.chargeAmount = amount !== null ? Number(amount) : 0;
-              const wallet = Number(this.currentUser.walletBalance ?? 0);
-              const bonus = Number(this.currentUser.bonusDays ?? 0);
-              this.canBookByFunds = (this.chargeAmount <= wallet) || (bonus > 0) || this.chargeAmount === 0;
-            },
-            error: () => {
-              this.currentUser = null;
-              this.chargeAmount = null;
-              this.canBookByFunds = null;
-            }
-          });
-        } else {
+    // Show the listed count right away, then refresh it: the window page may be
+    // minutes old and the seat count is what the member decides on
+    this.bookingCount = selectedClass.bookedCount ?? 0;
+    this.modalMode = 'view';
+    this.showModal = true;
+    this.gymClassService.getGymClassesByIds([classId]).subscribe({
+      next: ([fresh]) => {
+        if (!fresh || this.selectedClass?.id !== classId) return;
+        this.selectedClass = fresh;
+        this.bookingCount = fresh.bookedCount ?? 0;
+        this.allClasses = this.allClasses.map(c => c.id === classId ? fresh : c);
+      },
+      error: () => { /* keep the listed count */ }
+    });
+    // If user is authenticated, fetch profile to compute wallet/bonus eligibility
+    if (this.kc.isReady() && this.kc.isAuthenticated()) {
+      this.users.getMe().subscribe({
+        next: (me) => {
+          this.currentUser = me as User;
+          // Compute charge amount based on user's per-kind costs
+          const kind = selectedClass.kind as string;
+          const amount = this.resolveChargeAmountFromUser(this.currentUser, kind);
+          this.chargeAmount = amount !== null ? Number(amount) : 0;
+          const wallet = Number(this.currentUser.walletBalance ?? 0);
+          const bonus = Number(this.currentUser.bonusDays ?? 0);
+          this.canBookByFunds = (this.chargeAmount <= wallet) || (bonus > 0) || this.chargeAmount === 0;
+        },
+        error: () => {
           this.currentUser = null;
           this.chargeAmount = null;
           this.canBookByFunds = null;
         }
-      },
-      error: (err) => {
-        console.error('Error loading bookings:', err);
-        this.bookingCount = 0;
-        this.modalMode = 'view';
-        this.showModal = true;
-      }
-    });
+      });
+    } else {
+      this.currentUser = null;
+      this.chargeAmount = null;
+      this.canBookByFunds = null;
+    }
   }
 
   bookClass(): void {
@@ -260,15 +292,22 @@ export class CalendarComponent implements OnInit {
       return;
     }
 
-    this.bookingService.createBooking(this.selectedClass.id).subscribe({
-      next: () => {
-        console.log('Booking successful');
-        this.showToast(
-          this.translate.instant('calendar.messages.bookingSuccess'),
-          'success'
-        );
+    this.bookingService.createBooking(this.selectedClass.id, this.bookingIdempotencyKey ?? undefined).subscribe({
+      next: (booking) => {
+        if (booking.status === BookingStatus.WAITLISTED) {
+          // Queued-mode results carry no position, hence the generic message
+          const position = booking.waitlistPosition;
+          this.showToast(position
+            ? this.translate.instant('calendar.messages.waitlisted', { position })
+            : this.translate.instant('calendar.messages.waitlistedNoPosition'), 'info');
+        } else {
+          this.showToast(
+            this.translate.instant('calendar.messages.bookingSuccess'),
+            'success'
+          );
+        }
         this.closeModal();
-        this.loadData(); // Refresh data
+        this.loadClasses(); // Refresh seats in the visible range
       },
       error: (err) => {
         console.error('Error booking class:', err);
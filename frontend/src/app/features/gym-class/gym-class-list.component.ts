@@ -35,7 +35,7 @@ import { TranslateModule, TranslateService } from '@ngx-translate/core';
       </mat-form-field>
 
       <div class="controls">
-        <mat-slide-toggle [(ngModel)]="showPast" (change)="computeGroups()">
+        <mat-slide-toggle [(ngModel)]="showPast" (change)="loadClasses()">
           {{ 'gymClasses.list.showPast' | translate }}
         </mat-slide-toggle>
       </div>
@@ -157,8 +157,12 @@ export class GymClassListComponent implements OnInit {
     this.loadClasses();
   }
 
+  // Upcoming classes page by page; the whole history only when asked for
   loadClasses(): void {
-    this.gymClassService.getAllGymClasses().subscribe({
+    const classes$ = this.showPast
+      ? this.gymClassService.getAllGymClasses()
+      : this.gymClassService.getGymClassesInRange();
+    classes$.subscribe({
       next: (classes) => {
         this.classes = classes;
         this.filteredClasses = classes;
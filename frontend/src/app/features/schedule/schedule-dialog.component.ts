@@ -86,8 +86,9 @@ export class ScheduleDialogComponent implements OnInit {
     this.loadGymClasses();
   }
 
+  // Only upcoming classes can be scheduled
   loadGymClasses(): void {
-    this.gymClassService.getAllGymClasses().subscribe({
+    this.gymClassService.getGymClassesInRange(new Date()).subscribe({
       next: (classes) => {
         this.gymClasses = classes;
       }
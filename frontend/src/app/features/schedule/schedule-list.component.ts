@@ -183,13 +183,18 @@ export class ScheduleListComponent implements OnInit {
     this.filterForm.valueChanges.subscribe(() => {
       this.loadSchedules();
     });
+    this.filterForm.get('month')?.valueChanges.subscribe(() => {
+      this.loadGymClasses();
+    });
 
     this.dataSource.paginator = this.paginator;
     this.dataSource.sort = this.sort;
   }
 
+  // Classes of the selected month, for the filter and the row names
   loadGymClasses(): void {
-    this.gymClassService.getAllGymClasses().subscribe({
+    const month = startOfMonth(this.filterForm.get('month')?.value || new Date());
+    this.gymClassService.getGymClassesInRange(month, addMonths(month, 1)).subscribe({
       next: (classes) => {
         this.gymClasses = classes;
       },